@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/* Output locations of the bill text files.
+ *
+ * In "files" mode, each bill is a text file in a directory tree
+ * sharded by the last two digits of the phone number, for example
+ * bills/09/555-0109.txt.
+ *
+ * In "archive" mode, each partition writes all of its bills to one
+ * archive file, named after the job instance and the partition, for
+ * example bills/job-3-partition-0.bills. A restart of the job instance
+ * continues the same archives, and the archives of other job instances
+ * are not read with the bills of this one. Every entry in an archive is the phone number
+ * (DataOutput.writeUTF) followed by the length of the bill text in
+ * bytes (int) and the bill text in UTF-8.
+ */
+public class BillArchive {
+
+    public static final String FILES_MODE = "files";
+    public static final String ARCHIVE_MODE = "archive";
+    public static final String ARCHIVE_SUFFIX = ".bills";
+
+    private BillArchive() { }
+
+    /* Location of the text file of a bill in "files" mode */
+    public static Path billFile(Path dir, String phoneNumber) {
+        int len = phoneNumber.length();
+        String shard = phoneNumber.substring(Math.max(0, len - 2));
+        return dir.resolve(shard).resolve(phoneNumber + ".txt");
+    }
+
+    /* Location of the archive of a partition in "archive" mode */
+    public static Path archiveFile(Path dir, long instanceId, String partition) {
+        return dir.resolve(archivePrefix(instanceId) + partition + ARCHIVE_SUFFIX);
+    }
+
+    /* Read the bills of the archives of a job instance into a map
+     * from phone number to bill text. The partitions of an instance
+     * write the bills of different phone numbers. */
+    public static void readArchives(Path dir, long instanceId,
+                                    Map<String, String> bills)
+            throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        String glob = archivePrefix(instanceId) + "*" + ARCHIVE_SUFFIX;
+        try (DirectoryStream<Path> archives =
+                Files.newDirectoryStream(dir, glob)) {
+            for (Path archive : archives) {
+                readArchive(archive, bills);
+            }
+        }
+    }
+
+    private static String archivePrefix(long instanceId) {
+        return "job-" + instanceId + "-partition-";
+    }
+
+    private static void readArchive(Path archive, Map<String, String> bills)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archive)))) {
+            while (true) {
+                String phoneNumber;
+                try {
+                    phoneNumber = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                bills.put(phoneNumber, new String(text, StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
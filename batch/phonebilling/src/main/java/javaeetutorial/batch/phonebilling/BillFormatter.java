@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import javaeetutorial.batch.phonebilling.items.CallRecord;
+import javaeetutorial.batch.phonebilling.items.PhoneBill;
+
+/* Renders bills as text.
+ * The fixed parts of the layout are built once, and the dates and
+ * numbers are appended digit by digit to a StringBuilder that the
+ * caller reuses for every bill. The output is the same as formatting
+ * each line with SimpleDateFormat and String.format.
+ */
+public class BillFormatter {
+
+    private static final String NL = System.lineSeparator();
+    private static final String HEADER_START = "DUKE WIRELESS - ACCCOUNT ";
+    private static final String HEADER_END = NL + " " + NL
+            + "Date            \tFrom    \tTo      \tLength\tPrice" + NL;
+    private static final String BASE = " " + NL + "Base    \t";
+    private static final String TAX_RATE = NL + "Tax rate\t";
+    private static final String TAX = "%" + NL + "Tax     \t";
+    private static final String TOTAL = NL + "Total   \t";
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /* Append the text of a bill to the builder */
+    public void format(PhoneBill bill, StringBuilder sb) {
+        sb.append(HEADER_START).append(bill.getPhoneNumber()).append(HEADER_END);
+        for (CallRecord call : bill.getCalls()) {
+            appendDate(sb, call.getDatetime().getTime());
+            sb.append('\t').append(call.getFromNumber());
+            sb.append('\t').append(call.getToNumber());
+            sb.append('\t');
+            append2(sb, call.getMinutes());
+            sb.append(':');
+            append2(sb, call.getSeconds());
+            sb.append('\t');
+            appendAmount(sb, call.getPrice());
+            sb.append(NL);
+        }
+        sb.append(BASE);
+        appendAmount(sb, bill.getAmountBase());
+        sb.append(TAX_RATE);
+        appendAmount(sb, BigDecimal.valueOf(bill.getTaxRate().doubleValue() * 100));
+        sb.append(TAX);
+        appendAmount(sb, bill.getTax());
+        sb.append(TOTAL);
+        appendAmount(sb, bill.getAmountTotal());
+    }
+
+    /* MM/dd/yyyy HH:mm */
+    private void appendDate(StringBuilder sb, long millis) {
+        LocalDateTime dt = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(millis), zone);
+        append2(sb, dt.getMonthValue());
+        sb.append('/');
+        append2(sb, dt.getDayOfMonth());
+        sb.append('/');
+        sb.append(dt.getYear());
+        sb.append(' ');
+        append2(sb, dt.getHour());
+        sb.append(':');
+        append2(sb, dt.getMinute());
+    }
+
+    /* Same as %02d for values that are not negative */
+    private static void append2(StringBuilder sb, int value) {
+        if (value < 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    /* Same as %.2f, which rounds HALF_UP */
+    private static void appendAmount(StringBuilder sb, BigDecimal amount) {
+        sb.append(amount.setScale(2, RoundingMode.HALF_UP).toPlainString());
+    }
+}
@@ -11,14 +11,16 @@ import java.util.Properties;
 import javax.batch.api.partition.PartitionMapper;
 import javax.batch.api.partition.PartitionPlan;
 import javax.batch.api.partition.PartitionPlanImpl;
+import javax.batch.runtime.context.JobContext;
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 
 /* Partition mapper artifact.
- * Determines the number of partitions (2) for the bill processing step
+ * Determines the number of partitions for the bill processing step
  * and the range of bills each partition should work on.
  */
 @Dependent
@@ -27,35 +29,36 @@ public class BillPartitionMapper implements PartitionMapper {
 
     @PersistenceContext
     EntityManager em;
+    @Inject
+    JobContext jobCtx;
 
     @Override
     public PartitionPlan mapPartitions() throws Exception {
+        final long billCount = getBillCount();
+        /* 0 or less means no minimum number of bills */
+        long minBills = Math.max(1, Long.parseLong(jobCtx.getProperties()
+                .getProperty("bills_min_partition_size")));
+        
+        /* One partition per processor, unless there are too few bills
+         * to give each partition a reasonable amount of work */
+        int cores = Runtime.getRuntime().availableProcessors();
+        final int numPartitions =
+                (int) Math.max(1, Math.min(cores, billCount / minBills));
+        
         /* Create a new partition plan */
         return new PartitionPlanImpl() {
 
-            /* Auxiliary method - get the number of bills */
-            public long getBillCount() {
-                String query = "SELECT COUNT(b) FROM PhoneBill b";
-                Query q = em.createQuery(query);
-                return ((Long) q.getSingleResult()).longValue(); 
-            }
-
-            /* The number of partitions could be dynamically calculated based on
-             * many parameters. In this particular example, we are setting it to
-             * a fixed value for simplicity.
-             */
             @Override
             public int getPartitions() {
-                return 2;
+                return numPartitions;
             }
 
             @Override
             public Properties[] getPartitionProperties() {
                 /* Assign an (approximately) equal number of elements
                  * to each partition. */
-                long totalItems = getBillCount();
-                long partItems =  totalItems / getPartitions();
-                long remItems = totalItems % getPartitions();
+                long partItems =  billCount / getPartitions();
+                long remItems = billCount % getPartitions();
 
                 /* Populate a Properties array. Each Properties element
                  * in the array corresponds to a partition. */
@@ -79,4 +82,11 @@ public class BillPartitionMapper implements PartitionMapper {
         };
     }
 
+    /* Auxiliary method - get the number of bills */
+    private long getBillCount() {
+        String query = "SELECT COUNT(b) FROM PhoneBill b";
+        Query q = em.createQuery(query);
+        return ((Long) q.getSingleResult()).longValue(); 
+    }
+
 }
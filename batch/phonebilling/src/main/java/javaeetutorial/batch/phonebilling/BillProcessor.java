@@ -24,14 +24,18 @@ public class BillProcessor implements ItemProcessor {
     
     @Inject
     JobContext jobCtx;
+    BigDecimal taxRate;
 
     @Override
     public Object processItem(Object billObject) throws Exception {
 
-        String s_taxRate = jobCtx.getProperties().get("tax_rate").toString();
-        double taxRate = Double.parseDouble(s_taxRate);
+        /* Read the tax rate from the job properties only once */
+        if (taxRate == null) {
+            String s_taxRate = jobCtx.getProperties().get("tax_rate").toString();
+            taxRate = new BigDecimal(Double.parseDouble(s_taxRate));
+        }
         PhoneBill bill = (PhoneBill) billObject;
-        bill.calculate(new BigDecimal(taxRate));
+        bill.calculate(taxRate);
         return bill;
     }
     
@@ -8,7 +8,10 @@
 package javaeetutorial.batch.phonebilling;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import javaeetutorial.batch.phonebilling.items.PhoneBill;
 import javax.batch.api.BatchProperty;
 import javax.batch.api.chunk.ItemReader;
 import javax.enterprise.context.Dependent;
@@ -16,11 +19,13 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 /* Reader batch artifact.
  * Reads bills from the entity manager.
  * This artifact is in a partitioned step.
+ * Bills are read in pages ordered by phone number. Each page starts
+ * after the last phone number read, which is saved in the checkpoint.
  */
 @Dependent
 @Named("BillReader")
@@ -33,11 +38,16 @@ public class BillReader implements ItemReader {
     @BatchProperty(name = "numItems")
     private String numItemsValue;
 
+    @Inject
+    @BatchProperty(name = "pageSize")
+    private String pageSizeValue;
+
     private ItemNumberCheckpoint checkpoint;
+    private int pageSize;
 
     @PersistenceContext
     private EntityManager em;
-    private Iterator iterator;
+    private Iterator<PhoneBill> iterator;
 
     public BillReader() {
     }
@@ -48,25 +58,26 @@ public class BillReader implements ItemReader {
         /* Get the range of items to work on in this partition */
         long firstItem0 = Long.parseLong(firstItemValue);
         long numItems0 = Long.parseLong(numItemsValue);
+        pageSize = Integer.parseInt(pageSizeValue);
 
         if (ckpt == null) {
             /* Create a checkpoint object for this partition */
             checkpoint = new ItemNumberCheckpoint();
             checkpoint.setItemNumber(firstItem0);
             checkpoint.setNumItems(numItems0);
+            /* Find the phone number just before this partition */
+            if (firstItem0 > 0) {
+                String query = "SELECT b.phoneNumber FROM PhoneBill b "
+                             + "ORDER BY b.phoneNumber";
+                TypedQuery<String> q = em.createQuery(query, String.class)
+                        .setFirstResult((int) firstItem0 - 1)
+                        .setMaxResults(1);
+                checkpoint.setLastKey(q.getSingleResult());
+            }
         } else {
             checkpoint = (ItemNumberCheckpoint) ckpt;
         }
-
-        /* Adjust range for this partition from the checkpoint */
-        long firstItem = checkpoint.getItemNumber();
-        long numItems = numItems0 - (firstItem - firstItem0);
-
-        /* Obtain an iterator for the bills in this partition */
-        String query = "SELECT b FROM PhoneBill b ORDER BY b.phoneNumber";
-        Query q = em.createQuery(query).setFirstResult((int) firstItem)
-                .setMaxResults((int) numItems);
-        iterator = q.getResultList().iterator();
+        iterator = null;
     }
 
     @Override
@@ -75,10 +86,18 @@ public class BillReader implements ItemReader {
 
     @Override
     public Object readItem() throws Exception {
+        if (checkpoint.getNumItems() <= 0) {
+            return null;
+        }
+        if (iterator == null || !iterator.hasNext()) {
+            iterator = nextPage();
+        }
         if (iterator.hasNext()) {
+            PhoneBill bill = iterator.next();
             checkpoint.nextItem();
             checkpoint.setNumItems(checkpoint.getNumItems() - 1);
-            return iterator.next();
+            checkpoint.setLastKey(bill.getPhoneNumber());
+            return bill;
         } else {
             return null;
         }
@@ -89,4 +108,36 @@ public class BillReader implements ItemReader {
         return checkpoint;
     }
 
+    /* Auxiliary method - get the next page of bills after the last key.
+     * The phone numbers of the page are obtained first, so the limit
+     * applies to bills and not to the rows of the join with the calls. */
+    private Iterator<PhoneBill> nextPage() {
+        int maxResults = (int) Math.min(pageSize, checkpoint.getNumItems());
+        TypedQuery<String> kq;
+        if (checkpoint.getLastKey() == null) {
+            String query = "SELECT b.phoneNumber FROM PhoneBill b "
+                         + "ORDER BY b.phoneNumber";
+            kq = em.createQuery(query, String.class);
+        } else {
+            String query = "SELECT b.phoneNumber FROM PhoneBill b "
+                         + "WHERE b.phoneNumber > :lastKey "
+                         + "ORDER BY b.phoneNumber";
+            kq = em.createQuery(query, String.class)
+                    .setParameter("lastKey", checkpoint.getLastKey());
+        }
+        List<String> keys = kq.setMaxResults(maxResults).getResultList();
+        if (keys.isEmpty()) {
+            return Collections.<PhoneBill>emptyIterator();
+        }
+
+        /* Load the bills of this page together with their calls */
+        String query = "SELECT DISTINCT b FROM PhoneBill b "
+                     + "LEFT JOIN FETCH b.calls "
+                     + "WHERE b.phoneNumber IN :keys "
+                     + "ORDER BY b.phoneNumber";
+        TypedQuery<PhoneBill> q = em.createQuery(query, PhoneBill.class)
+                .setParameter("keys", keys);
+        return q.getResultList().iterator();
+    }
+
 }
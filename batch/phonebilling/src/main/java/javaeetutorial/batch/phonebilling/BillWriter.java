@@ -7,70 +7,176 @@
  */
 package javaeetutorial.batch.phonebilling;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
 import java.util.List;
-import javaeetutorial.batch.phonebilling.items.CallRecord;
+import java.util.Properties;
+import java.util.Set;
 import javaeetutorial.batch.phonebilling.items.PhoneBill;
+import javax.batch.api.BatchProperty;
 import javax.batch.api.chunk.ItemWriter;
+import javax.batch.runtime.context.JobContext;
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
 import javax.inject.Named;
 
 /* Writer artifact.
- * Write each bill to a text file.
+ * Write each bill to a text file, or append it to the archive of this
+ * partition, depending on the properties in the job definition file.
+ * The bill text is rendered into a buffer that is reused for every bill.
  */
 @Dependent
 @Named("BillWriter")
 public class BillWriter implements ItemWriter {
-    
+
+    @Inject
+    @BatchProperty(name = "firstItem")
+    private String firstItemValue;
+
+    @Inject
+    JobContext jobCtx;
+
+    private final BillFormatter formatter = new BillFormatter();
+    private final StringBuilder text = new StringBuilder(4096);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private ByteBuffer bytes = ByteBuffer.allocate(8192);
+    private final Set<Path> shards = new HashSet<>();
+
+    private Path outputDir;
+    private boolean archiveMode;
+    private int flushItems;
+    private int unflushedItems;
+
+    /* Archive mode only */
+    private ItemNumberCheckpoint checkpoint;
+    private FileChannel channel;
+    private DataOutputStream archive;
+    private long position;
+
     @Override
-    public void open(Serializable ckpt) throws Exception { }
+    public void open(Serializable ckpt) throws Exception {
+        Properties jobProps = jobCtx.getProperties();
+        outputDir = Paths.get(jobProps.getProperty("bills_output_dir"));
+        archiveMode = BillArchive.ARCHIVE_MODE.equals(
+                jobProps.getProperty("bills_output_mode"));
+        flushItems = Integer.parseInt(jobProps.getProperty("bills_flush_items"));
+        Files.createDirectories(outputDir);
+
+        if (archiveMode) {
+            /* On a restart, discard what was written after the checkpoint */
+            if (ckpt == null)
+                checkpoint = new ItemNumberCheckpoint();
+            else
+                checkpoint = (ItemNumberCheckpoint) ckpt;
+            position = checkpoint.getOffset();
+            Path file = BillArchive.archiveFile(outputDir,
+                    jobCtx.getInstanceId(), firstItemValue);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE);
+            channel.truncate(position);
+            channel.position(position);
+            OutputStream ostream = Channels.newOutputStream(channel);
+            archive = new DataOutputStream(
+                    new BufferedOutputStream(ostream, 64 * 1024));
+        }
+    }
 
     @Override
-    public void close() throws Exception { }
+    public void close() throws Exception {
+        if (archive != null)
+            archive.close();
+    }
 
     @Override
     public void writeItems(List<Object> list) throws Exception {
         for (Object billObject : list) {
             PhoneBill bill = (PhoneBill) billObject;
-            FileWriter fwriter = new FileWriter(bill.getPhoneNumber()+".txt");
-            try (BufferedWriter bwriter = new BufferedWriter(fwriter)) {
-                bwriter.write("DUKE WIRELESS - ACCCOUNT " + bill.getPhoneNumber());
-                bwriter.newLine();
-                bwriter.write(" ");
-                bwriter.newLine();
-                bwriter.write("Date            \tFrom    \tTo      \tLength\tPrice");
-                bwriter.newLine();
-                for (CallRecord call : bill.getCalls()) {
-                    SimpleDateFormat dformat = new SimpleDateFormat("MM/dd/yyyy HH:mm");
-                    String date = dformat.format(call.getDatetime());
-                    bwriter.write(String.format("%s\t%s\t%s\t%02d:%02d\t%.2f", 
-                                                date,
-                                                call.getFromNumber(),
-                                                call.getToNumber(),
-                                                call.getMinutes(),
-                                                call.getSeconds(),
-                                                call.getPrice()));
-                    bwriter.newLine();
+            text.setLength(0);
+            formatter.format(bill, text);
+            encode();
+
+            if (archiveMode) {
+                int length = bytes.remaining();
+                archive.writeUTF(bill.getPhoneNumber());
+                archive.writeInt(length);
+                archive.write(bytes.array(), 0, length);
+                position += 2 + utfLength(bill.getPhoneNumber()) + 4 + length;
+                /* Flush the archive every flushItems bills */
+                if (flushItems > 0 && ++unflushedItems >= flushItems) {
+                    archive.flush();
+                    unflushedItems = 0;
+                }
+            } else {
+                Path file = BillArchive.billFile(outputDir, bill.getPhoneNumber());
+                if (shards.add(file.getParent()))
+                    Files.createDirectories(file.getParent());
+                try (FileChannel fchannel = FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (bytes.hasRemaining())
+                        fchannel.write(bytes);
                 }
-                bwriter.write(" ");
-                bwriter.newLine();
-                bwriter.write(String.format("Base    \t%.2f", bill.getAmountBase()));
-                bwriter.newLine();
-                bwriter.write(String.format("Tax rate\t%.2f%%", bill.getTaxRate().doubleValue()*100));
-                bwriter.newLine();
-                bwriter.write(String.format("Tax     \t%.2f", bill.getTax()));
-                bwriter.newLine();
-                bwriter.write(String.format("Total   \t%.2f", bill.getAmountTotal()));
             }
         }
     }
 
     @Override
     public Serializable checkpointInfo() throws Exception {
+        if (archiveMode) {
+            /* Everything up to the checkpoint must be in the file */
+            archive.flush();
+            unflushedItems = 0;
+            checkpoint.setOffset(position);
+            return checkpoint;
+        }
         return new ItemNumberCheckpoint();
     }
-    
+
+    /* Number of bytes written by DataOutput.writeUTF, without the length */
+    private static int utfLength(String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                len += 1;
+            else if (c <= 0x07FF)
+                len += 2;
+            else
+                len += 3;
+        }
+        return len;
+    }
+
+    /* Encode the bill text into the reusable byte buffer */
+    private void encode() {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        bytes.clear();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isUnderflow())
+                result = encoder.flush(bytes);
+            if (result.isUnderflow())
+                break;
+            /* The buffer is too small for this bill, start again */
+            bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+            chars.rewind();
+            encoder.reset();
+        }
+        bytes.flip();
+    }
 }
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/* Fixed-point arithmetic for call prices.
+ * Airtime prices are kept in millionths of a currency unit (micros)
+ * and call prices in cents, so pricing a call needs no floating point
+ * and no BigDecimal. Prices are rounded to the cent with HALF_EVEN,
+ * the same rounding that CallRecord.setPrice uses.
+ */
+public final class CallPricing {
+
+    private static final long MICROS_PER_CENT = 10000;
+    private static final long SECONDS_PER_MINUTE = 60;
+
+    private CallPricing() { }
+
+    /* Parse a price per minute, such as "0.08", into micros */
+    public static long parseMicros(String price) {
+        return new BigDecimal(price).movePointRight(6)
+                .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /* Price of a call in cents */
+    public static long priceCents(long microsPerMinute, int minutes, int seconds) {
+        long totalSeconds = SECONDS_PER_MINUTE * minutes + seconds;
+        return divideHalfEven(microsPerMinute * totalSeconds,
+                              SECONDS_PER_MINUTE * MICROS_PER_CENT);
+    }
+
+    /* Divide two non-negative numbers rounding HALF_EVEN */
+    private static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long twiceRemainder = 2 * (dividend % divisor);
+        if (twiceRemainder > divisor
+                || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+            quotient++;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import javax.batch.api.partition.PartitionMapper;
+import javax.batch.api.partition.PartitionPlan;
+import javax.batch.api.partition.PartitionPlanImpl;
+import javax.batch.runtime.context.JobContext;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/* Partition mapper artifact.
+ * Splits the input of the call record step among partitions.
+ * If the input is a single uncompressed file, each partition reads
+ * a range of bytes of the file. Every range starts at the beginning
+ * of a line, so each call record is read by exactly one partition.
+ * Otherwise each partition reads a range of whole files.
+ * The number of partitions depends on the number of processors and
+ * on the size of the input.
+ */
+@Dependent
+@Named("CallRecordPartitionMapper")
+public class CallRecordPartitionMapper implements PartitionMapper {
+
+    @Inject
+    JobContext jobCtx;
+
+    @Override
+    public PartitionPlan mapPartitions() throws Exception {
+        Properties jobProps = jobCtx.getProperties();
+        String fileName = jobProps.getProperty("log_file_name");
+        /* 0 or less means no minimum size */
+        long minBytes = Math.max(1, Long.parseLong(
+                jobProps.getProperty("callrecords_min_partition_size")));
+        List<Path> files = LogFileReader.resolve(fileName);
+
+        final Properties[] props;
+        if (files.size() == 1 && !LogFileReader.isCompressed(files.get(0))) {
+            props = mapByteRanges(files.get(0), minBytes);
+        } else {
+            props = mapFiles(files, minBytes);
+        }
+
+        return new PartitionPlanImpl() {
+            @Override
+            public int getPartitions() {
+                return props.length;
+            }
+
+            @Override
+            public Properties[] getPartitionProperties() {
+                return props;
+            }
+        };
+    }
+
+    /* Auxiliary method - one partition per processor, unless the input
+     * is too small to give each partition a reasonable amount of work */
+    private int numPartitions(long inputSize, long minBytes) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return (int) Math.max(1, Math.min(cores, inputSize / minBytes));
+    }
+
+    /* Auxiliary method - split a file into ranges of lines */
+    private Properties[] mapByteRanges(Path file, long minBytes)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int numPartitions = numPartitions(fileSize, minBytes);
+
+            /* Populate a Properties array. Each Properties element
+             * in the array corresponds to a partition. */
+            Properties[] props = new Properties[numPartitions];
+            long start = 0;
+            for (int i = 0; i < numPartitions; i++) {
+                long end;
+                if (i == numPartitions - 1) {
+                    /* Last partition reads up to the end of the file */
+                    end = fileSize;
+                } else {
+                    end = nextLineStart(channel,
+                            Math.max(start, fileSize * (i + 1) / numPartitions));
+                }
+                props[i] = partition(0, 1, start, end);
+                start = end;
+            }
+            return props;
+        }
+    }
+
+    /* Auxiliary method - split a list of files into ranges of files
+     * of about the same total size */
+    private Properties[] mapFiles(List<Path> files, long minBytes)
+            throws IOException {
+        long[] sizes = new long[files.size()];
+        long totalSize = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Files.size(files.get(i));
+            totalSize += sizes[i];
+        }
+        int numPartitions = (int) Math.min(files.size(),
+                numPartitions(totalSize, minBytes));
+        if (numPartitions == 0) {
+            /* No input files, one partition with nothing to read */
+            return new Properties[] { partition(0, 0, 0, -1) };
+        }
+
+        Properties[] props = new Properties[numPartitions];
+        int startFile = 0;
+        long accumulated = 0;
+        for (int i = 0; i < numPartitions; i++) {
+            int endFile = startFile;
+            long target = totalSize * (i + 1) / numPartitions;
+            /* Leave at least one file for each remaining partition */
+            int maxEnd = files.size() - (numPartitions - i - 1);
+            do {
+                accumulated += sizes[endFile++];
+            } while (endFile < maxEnd && accumulated < target);
+            if (i == numPartitions - 1) {
+                endFile = files.size();
+            }
+            props[i] = partition(startFile, endFile, 0, -1);
+            startFile = endFile;
+        }
+        return props;
+    }
+
+    private Properties partition(int startFile, int endFile,
+                                 long startOffset, long endOffset) {
+        Properties props = new Properties();
+        props.setProperty("startFile", String.valueOf(startFile));
+        props.setProperty("endFile", String.valueOf(endFile));
+        props.setProperty("startOffset", String.valueOf(startOffset));
+        props.setProperty("endOffset", String.valueOf(endOffset));
+        return props;
+    }
+
+    /* Auxiliary method - the offset of the first line that
+     * starts at or after the given position */
+    private long nextLineStart(FileChannel channel, long position)
+            throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        /* Start from the previous byte in case position is a line start */
+        long pos = position - 1;
+        while (true) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+    }
+}
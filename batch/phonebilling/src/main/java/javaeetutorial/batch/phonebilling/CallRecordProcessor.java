@@ -7,7 +7,6 @@
  */
 package javaeetutorial.batch.phonebilling;
 
-import java.math.BigDecimal;
 import javaeetutorial.batch.phonebilling.items.CallRecord;
 import javax.batch.api.chunk.ItemProcessor;
 import javax.batch.runtime.context.JobContext;
@@ -24,21 +23,25 @@ public class CallRecordProcessor implements ItemProcessor {
     
     @Inject
     JobContext jobCtx;
-    double airPrice;
+    long airPriceMicros = -1;
     
     public CallRecordProcessor() { }
 
     @Override
     public Object processItem(Object obj) throws Exception {
         CallRecord call;
-        double callPrice;
+        
+        /* Read the airtime price from the job properties only once */
+        if (airPriceMicros < 0) {
+            String s_airPrice = jobCtx.getProperties().getProperty("airtime_price");
+            airPriceMicros = CallPricing.parseMicros(s_airPrice);
+        }
         
         /* Calculate the price of this call */
-        String s_airPrice = jobCtx.getProperties().getProperty("airtime_price");
-        airPrice = Double.parseDouble(s_airPrice);
         call = (CallRecord) obj;
-        callPrice = airPrice*(1.0*call.getMinutes() + call.getSeconds()/60.0);
-        call.setPrice(new BigDecimal(callPrice));
+        call.setPriceCents(CallPricing.priceCents(airPriceMicros, 
+                                                  call.getMinutes(), 
+                                                  call.getSeconds()));
         return call;
     }
     
@@ -7,59 +7,99 @@
  */
 package javaeetutorial.batch.phonebilling;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.Serializable;
-import javaeetutorial.batch.phonebilling.items.CallRecord;
+import java.nio.file.Path;
+import java.util.List;
+import javaeetutorial.batch.phonebilling.items.CallRecordParser;
+import javax.annotation.Resource;
+import javax.batch.api.BatchProperty;
 import javax.batch.api.chunk.ItemReader;
 import javax.batch.runtime.context.JobContext;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 /* Reader batch artifact.
- * Reads call records from the input log file.
+ * Reads call records from the input log files (see LogFileReader).
+ * This artifact is in a partitioned step, each partition reads
+ * a range of files or a range of bytes of a single file.
  */
 @Dependent
 @Named("CallRecordReader")
 public class CallRecordReader implements ItemReader {
 
+    @Inject
+    @BatchProperty(name = "startFile")
+    private String startFileValue;
+    
+    @Inject
+    @BatchProperty(name = "endFile")
+    private String endFileValue;
+    
+    @Inject
+    @BatchProperty(name = "startOffset")
+    private String startOffsetValue;
+    
+    @Inject
+    @BatchProperty(name = "endOffset")
+    private String endOffsetValue;
+    
     private ItemNumberCheckpoint checkpoint;
     private String fileName;
-    private BufferedReader breader;
+    private LogFileReader lreader;
+    private final CallRecordParser parser = new CallRecordParser();
     @Inject
     JobContext jobCtx;
+    /* Decompresses gzip input ahead of the reader */
+    @Resource(name="java:comp/DefaultManagedExecutorService")
+    ManagedExecutorService mExecService;
     
     public CallRecordReader() { }
     
     @Override
     public void open(Serializable ckpt) throws Exception {
+        /* Get the range of files and bytes to work on in this partition */
+        int startFile = Integer.parseInt(startFileValue);
+        int endFile = Integer.parseInt(endFileValue);
+        long startOffset = Long.parseLong(startOffsetValue);
+        long endOffset = Long.parseLong(endOffsetValue);
+        
         /* Use the checkpoint provided if this is a restart */
-        if (ckpt == null)
+        if (ckpt == null) {
             checkpoint = new ItemNumberCheckpoint();
-        else
+            checkpoint.setFileIndex(startFile);
+            checkpoint.setOffset(startOffset);
+        } else
             checkpoint = (ItemNumberCheckpoint) ckpt;
         
-        /* Read the input file up to the checkpoint without processing */
+        /* Continue reading the input files at the checkpoint position */
         fileName = jobCtx.getProperties().getProperty("log_file_name");
-        breader = new BufferedReader(new FileReader(fileName));
-        for (int i=0; i<checkpoint.getItemNumber(); i++)
-            breader.readLine();
+        List<Path> files = LogFileReader.resolve(fileName);
+        LogFileReader.checkFile(files, checkpoint.getFileIndex(),
+                                checkpoint.getFileName());
+        lreader = new LogFileReader(files, 
+                                    checkpoint.getFileIndex(), 
+                                    checkpoint.getOffset(),
+                                    endFile, endOffset, mExecService);
     }
 
     @Override
     public void close() throws Exception {
-        breader.close();
+        lreader.close();
     }
 
     @Override
     public Object readItem() throws Exception {
         /* Read a line from the log file and 
          * create a CallRecord from JSON */
-        String callEntryJson = breader.readLine();
+        String callEntryJson = lreader.readLine();
         if (callEntryJson != null) {
             checkpoint.nextItem();
-            return new CallRecord(callEntryJson);
+            checkpoint.setFileIndex(lreader.getFileIndex());
+            checkpoint.setFileName(lreader.getFileName());
+            checkpoint.setOffset(lreader.getPosition());
+            return parser.parse(callEntryJson);
         } else
             return null;
     }
@@ -8,7 +8,10 @@
 package javaeetutorial.batch.phonebilling;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javaeetutorial.batch.phonebilling.items.CallRecord;
 import javaeetutorial.batch.phonebilling.items.PhoneBill;
 import javax.batch.api.chunk.ItemWriter;
@@ -16,9 +19,12 @@ import javax.enterprise.context.Dependent;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 
 /* Writer batch artifact.
  * Add every call to a bill entity.
+ * The calls in a chunk are grouped by customer, so each bill
+ * is looked up and updated only once per chunk.
  */
 @Dependent
 @Named("CallRecordWriter")
@@ -42,19 +48,51 @@ public class CallRecordWriter implements ItemWriter {
     @Override
     public void writeItems(List<Object> callList) throws Exception {
         
+        /* Group the calls in this chunk by customer */
+        Map<String, List<CallRecord>> callsByNumber = new HashMap<>();
         for (Object callObject : callList) {
             CallRecord call = (CallRecord) callObject;
-            PhoneBill bill = em.find(PhoneBill.class, call.getFromNumber());
+            List<CallRecord> calls = callsByNumber.get(call.getFromNumber());
+            if (calls == null) {
+                calls = new ArrayList<>();
+                callsByNumber.put(call.getFromNumber(), calls);
+            }
+            calls.add(call);
+        }
+        
+        /* Obtain the existing bills for these customers in one query */
+        String query = "SELECT DISTINCT b FROM PhoneBill b "
+                     + "LEFT JOIN FETCH b.calls "
+                     + "WHERE b.phoneNumber IN :numbers";
+        TypedQuery<PhoneBill> q = em.createQuery(query, PhoneBill.class)
+                .setParameter("numbers", callsByNumber.keySet());
+        Map<String, PhoneBill> bills = new HashMap<>();
+        for (PhoneBill bill : q.getResultList()) {
+            bills.put(bill.getPhoneNumber(), bill);
+        }
+        
+        for (Map.Entry<String, List<CallRecord>> entry : 
+                callsByNumber.entrySet()) {
+            PhoneBill bill = bills.get(entry.getKey());
             if (bill == null) {
                 /* No bill for this customer yet, create one */
-                bill = new PhoneBill(call.getFromNumber());
-                bill.addCall(call);
+                bill = new PhoneBill(entry.getKey());
+                for (CallRecord call : entry.getValue())
+                    bill.addCall(call);
                 em.persist(bill);
             } else {
-                /* Add call to existing bill */
-                bill.addCall(call);
+                /* Add calls to existing bill */
+                for (CallRecord call : entry.getValue())
+                    bill.addCall(call);
             }
         }
+        /* Partitions may create the same bill at the same time. Flush here
+         * so that the conflict is reported by this method and the chunk
+         * is retried (see the job definition file). The inserts are sent
+         * to the database in JDBC batches (see persistence.xml). */
+        em.flush();
+        /* Do not keep the bills and calls of this chunk in memory */
+        em.clear();
     }
 
     @Override
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/* Reads lines from a gzip compressed file.
+ * A task on the given executor decompresses the file ahead of the
+ * reader into a small queue of blocks. Positions are offsets in the
+ * uncompressed text. A compressed file cannot be read from the middle,
+ * so starting at an offset decompresses and skips the text before it.
+ */
+public class GzipLineReader implements LineSource {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int READ_AHEAD_BLOCKS = 4;
+    private static final byte[] EOF = new byte[0];
+
+    private final BlockingQueue<byte[]> blocks =
+            new ArrayBlockingQueue<>(READ_AHEAD_BLOCKS);
+    private final long end;
+    private volatile boolean closed;
+    private volatile IOException error;
+    private byte[] block;
+    private int blockPos;
+    private long position;
+    private byte[] lineBuf = new byte[256];
+
+    /* Read the lines that start in the range [offset, end) */
+    public GzipLineReader(Path file, long offset, long end, Executor executor)
+            throws IOException {
+        this.end = end;
+        InputStream fileIn = Files.newInputStream(file);
+        final InputStream in;
+        try {
+            in = new GZIPInputStream(fileIn, BLOCK_SIZE);
+        } catch (IOException | RuntimeException e) {
+            fileIn.close();
+            throw e;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decompress(in);
+                }
+            });
+        } catch (RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        try {
+            skip(offset);
+        } catch (IOException | RuntimeException e) {
+            /* Stop the decompression task, it closes the file */
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (position >= end || !fill()) {
+            return null;
+        }
+        int len = 0;
+        while (fill()) {
+            byte b = block[blockPos++];
+            position++;
+            if (b == '\n') {
+                break;
+            }
+            if (len == lineBuf.length) {
+                lineBuf = Arrays.copyOf(lineBuf, len * 2);
+            }
+            lineBuf[len++] = b;
+        }
+        if (len > 0 && lineBuf[len - 1] == '\r') {
+            len--;
+        }
+        return new String(lineBuf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        /* Unblock the decompression task if it is waiting for space */
+        blocks.clear();
+    }
+
+    /* Discard the text before the given offset */
+    private void skip(long offset) throws IOException {
+        while (position < offset && fill()) {
+            int n = (int) Math.min(block.length - blockPos, offset - position);
+            blockPos += n;
+            position += n;
+        }
+    }
+
+    /* Make sure there are bytes available in the current block,
+     * return false at the end of the file */
+    private boolean fill() throws IOException {
+        while (block == null || blockPos == block.length) {
+            if (block == EOF) {
+                if (error != null) {
+                    throw error;
+                }
+                return false;
+            }
+            try {
+                block = blocks.take();
+                blockPos = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return true;
+    }
+
+    /* Decompression task, runs on the executor */
+    private void decompress(InputStream in) {
+        try (InputStream input = in) {
+            while (!closed) {
+                byte[] buf = new byte[BLOCK_SIZE];
+                int n = 0;
+                int r;
+                while (n < buf.length && (r = input.read(buf, n, buf.length - n)) > 0) {
+                    n += r;
+                }
+                if (n == 0) {
+                    break;
+                }
+                put(n == buf.length ? buf : Arrays.copyOf(buf, n));
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                put(EOF);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void put(byte[] buf) throws InterruptedException {
+        while (!closed && !blocks.offer(buf, 100, TimeUnit.MILLISECONDS)) {
+            /* Wait until the reader takes a block or is closed */
+        }
+    }
+}
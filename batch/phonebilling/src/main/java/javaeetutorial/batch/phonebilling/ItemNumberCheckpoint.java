@@ -15,6 +15,10 @@ public class ItemNumberCheckpoint implements Serializable {
     private static final long serialVersionUID = 5999782131990251192L;
     private long itemNumber;
     private long numItems;
+    private int fileIndex;
+    private long offset;
+    private String fileName;
+    private String lastKey;
     
     public ItemNumberCheckpoint() {
         itemNumber = 0;
@@ -44,4 +48,40 @@ public class ItemNumberCheckpoint implements Serializable {
     public void setItemNumber(long item) {
         itemNumber = item;
     }
+    
+    /* Index of the input file of the next item */
+    public int getFileIndex() {
+        return fileIndex;
+    }
+    
+    public void setFileIndex(int fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+    
+    /* Byte offset in the input file of the next item */
+    public long getOffset() {
+        return offset;
+    }
+    
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+    
+    /* Name of the input file of the next item */
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    /* Key of the last item read, for readers that page through entities */
+    public String getLastKey() {
+        return lastKey;
+    }
+    
+    public void setLastKey(String lastKey) {
+        this.lastKey = lastKey;
+    }
 }
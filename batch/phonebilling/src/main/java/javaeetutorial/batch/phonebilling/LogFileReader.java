@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/* Reads lines from a sequence of log files.
+ * The input can be a single file, a directory (all the files in it,
+ * in name order) or a glob pattern on the file name, such as
+ * logs/calls-*.txt.gz. Files ending in .gz are decompressed on the fly,
+ * other files are memory-mapped. The position of the reader is the
+ * index of the current file and the byte offset in that file.
+ */
+public class LogFileReader implements LineSource {
+
+    private final List<Path> files;
+    private final int endFile;
+    private final long endOffset;
+    private final Executor executor;
+    private int fileIndex;
+    private LineSource source;
+
+    /* Read the files with indexes in [startFile, endFile), starting at
+     * startOffset in the first file. If endOffset is not negative, stop
+     * before the first line that starts at or after endOffset in the
+     * last file. */
+    public LogFileReader(List<Path> files, int startFile, long startOffset,
+                         int endFile, long endOffset, Executor executor)
+            throws IOException {
+        this.files = files;
+        this.endFile = endFile;
+        this.endOffset = endOffset;
+        this.executor = executor;
+        this.fileIndex = startFile;
+        if (fileIndex < endFile) {
+            source = open(fileIndex, startOffset);
+        }
+    }
+
+    /* The files for an input specification, in the order they are read */
+    public static List<Path> resolve(String input) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path path = Paths.get(input);
+        DirectoryStream<Path> stream;
+        if (Files.isDirectory(path)) {
+            stream = Files.newDirectoryStream(path);
+        } else if (isGlob(path.getFileName().toString())) {
+            Path dir = path.getParent() == null ? Paths.get(".") : path.getParent();
+            stream = Files.newDirectoryStream(dir, path.getFileName().toString());
+        } else {
+            files.add(path);
+            return files;
+        }
+        try (DirectoryStream<Path> entries = stream) {
+            for (Path file : entries) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /* Check that a restart finds the file of the checkpoint at the same
+     * index, since the input may have changed (for example, a log file
+     * was rotated). The name is null in checkpoints without one. */
+    public static void checkFile(List<Path> files, int index, String name)
+            throws IOException {
+        if (name == null) {
+            return;
+        }
+        if (index >= files.size() || !files.get(index).toString().equals(name)) {
+            throw new IOException(String.format(
+                    "The input file %s is no longer at position %d", name, index));
+        }
+    }
+
+    public static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /* Index of the file of the next line */
+    public int getFileIndex() {
+        return fileIndex;
+    }
+
+    /* Name of the file of the next line, null after the last file */
+    public String getFileName() {
+        return fileIndex < files.size() ? files.get(fileIndex).toString() : null;
+    }
+
+    @Override
+    public long getPosition() {
+        return source == null ? 0 : source.getPosition();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        while (source != null) {
+            String line = source.readLine();
+            if (line != null) {
+                return line;
+            }
+            /* Continue with the next file */
+            source.close();
+            source = null;
+            if (++fileIndex < endFile) {
+                source = open(fileIndex, 0);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    private LineSource open(int index, long offset) throws IOException {
+        Path file = files.get(index);
+        long end = (index == endFile - 1 && endOffset >= 0)
+                ? endOffset : Long.MAX_VALUE;
+        if (isCompressed(file)) {
+            return new GzipLineReader(file, offset, end, executor);
+        } else {
+            return new MappedLineReader(file, offset, end);
+        }
+    }
+
+    private static boolean isGlob(String name) {
+        for (char c : "*?[{".toCharArray()) {
+            if (name.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -11,11 +11,18 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.logging.Logger;
-import javaeetutorial.batch.phonebilling.items.PhoneBill;
+import javaeetutorial.batch.phonebilling.BillArchive;
 import javaeetutorial.batch.phonebilling.tools.CallRecordLogCreator;
 import javax.batch.operations.JobOperator;
 import javax.batch.runtime.BatchRuntime;
@@ -42,6 +49,8 @@ public class JsfBean implements Serializable {
     EntityManager em;
     private static final Logger logger = Logger.getLogger("JsfBean");
     private static final long serialVersionUID = 6775054787257816151L;
+    /* Job parameter for the output directory of the bills step */
+    private static final String BILLS_DIR_PARAM = "bills_output_dir";
     
     /* Create a long log file of calls */
     public String createAndShowLog() throws FileNotFoundException, IOException {
@@ -64,7 +73,9 @@ public class JsfBean implements Serializable {
      * JSF Navigation method (return the name of the next page) */
     public String startBatchJob() {
         jobOperator = BatchRuntime.getJobOperator();
-        execID = jobOperator.start("phonebilling", null);
+        Properties jobParams = new Properties();
+        jobParams.setProperty(BILLS_DIR_PARAM, "bills");
+        execID = jobOperator.start("phonebilling", jobParams);
         return "jobstarted";
     }
     
@@ -86,15 +97,29 @@ public class JsfBean implements Serializable {
         List<List<String>> rowList = new ArrayList<>();
         
         if (isCompleted()) {
-            String query = "SELECT b FROM PhoneBill b ORDER BY b.phoneNumber";
+            String query = "SELECT b.phoneNumber FROM PhoneBill b ORDER BY b.phoneNumber";
             Query q = em.createQuery(query);
             
-            for (Object billObject : q.getResultList()) {
+            /* The output directory this execution was started with */
+            Path billsDir = Paths.get(jobOperator.getParameters(execID)
+                                                 .getProperty(BILLS_DIR_PARAM));
+            
+            /* Bills written in "archive" mode (see the job definition file) */
+            long instanceId = jobOperator.getJobInstance(execID).getInstanceId();
+            Map<String, String> archived = new HashMap<>();
+            BillArchive.readArchives(billsDir, instanceId, archived);
+            
+            for (Object numberObject : q.getResultList()) {
                 /* Each bill */
-                PhoneBill bill = (PhoneBill) billObject;
+                String phoneNumber = (String) numberObject;
                 List<String> lines = new ArrayList<>();
                 
-                FileReader reader = new FileReader(bill.getPhoneNumber()+".txt");
+                Reader reader;
+                if (archived.containsKey(phoneNumber))
+                    reader = new StringReader(archived.get(phoneNumber));
+                else
+                    reader = new FileReader(BillArchive.billFile(
+                            billsDir, phoneNumber).toFile());
                 try (BufferedReader breader = new BufferedReader(reader)) {
                     String line = breader.readLine();
                     while (line != null) {
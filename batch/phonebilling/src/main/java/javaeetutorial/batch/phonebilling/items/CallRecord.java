@@ -55,6 +55,15 @@ public class CallRecord implements Serializable {
         this.seconds = sec;
     }
     
+    /* Create a call record from already parsed fields */
+    CallRecord(Date datetime, String from, String to, int min, int sec) {
+        this.datetime = datetime;
+        this.fromNumber = from;
+        this.toNumber = to;
+        this.minutes = min;
+        this.seconds = sec;
+    }
+    
     public CallRecord(String jsonData) throws ParseException {
         
         /* Create a call record from a line of the log file (JSON) */
@@ -96,6 +105,13 @@ public class CallRecord implements Serializable {
         this.price = price.setScale(2, RoundingMode.HALF_EVEN);
     }
     public BigDecimal getPrice() { return price; }
+    public void setPriceCents(long cents) {
+        this.price = BigDecimal.valueOf(cents, 2);
+    }
+    public long getPriceCents() {
+        return price.setScale(2, RoundingMode.HALF_EVEN).unscaledValue()
+                    .longValueExact();
+    }
 
     public Long getId() {
         return id;
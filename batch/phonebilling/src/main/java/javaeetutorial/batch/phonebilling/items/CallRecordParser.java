@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling.items;
+
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/* Creates call records from lines of the log file (JSON).
+ * The log entries always have the same four string fields, so this
+ * class scans the characters of the line directly instead of building
+ * a JsonParser and an intermediate map for every entry.
+ *
+ * Log entries look like this:
+ * {"datetime":"03/01/2013 04:03","from":"555-0109",
+ * "to":"555-0112","length":"05:39"}
+ */
+public class CallRecordParser {
+
+    /* DateTimeFormatter is immutable and can be shared by all threads */
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public CallRecord parse(CharSequence line) throws ParseException {
+        Date datetime = null;
+        String from = null;
+        String to = null;
+        int minutes = -1;
+        int seconds = -1;
+
+        int pos = 0;
+        int len = line.length();
+        while (pos < len) {
+            /* Key */
+            int keyStart = indexOf(line, '"', pos) + 1;
+            if (keyStart == 0) {
+                break;
+            }
+            int keyEnd = indexOf(line, '"', keyStart);
+            if (keyEnd < 0) {
+                throw new ParseException("Malformed call record: " + line, pos);
+            }
+            /* Value */
+            int valueStart = indexOf(line, '"', keyEnd + 1) + 1;
+            int valueEnd = valueStart == 0 ? -1 : indexOf(line, '"', valueStart);
+            if (valueEnd < 0) {
+                throw new ParseException("Malformed call record: " + line, pos);
+            }
+            if (indexOf(line, '\\', keyStart, valueEnd) >= 0) {
+                /* Escaped characters are never produced by the log creator,
+                 * let the JSON parser handle them */
+                return new CallRecord(line.toString());
+            }
+
+            switch (keyEnd - keyStart) {
+                case 8:
+                    if (matches(line, keyStart, "datetime")) {
+                        datetime = parseDate(line, valueStart, valueEnd);
+                    }
+                    break;
+                case 4:
+                    if (matches(line, keyStart, "from")) {
+                        from = line.subSequence(valueStart, valueEnd).toString();
+                    }
+                    break;
+                case 2:
+                    if (matches(line, keyStart, "to")) {
+                        to = line.subSequence(valueStart, valueEnd).toString();
+                    }
+                    break;
+                case 6:
+                    if (matches(line, keyStart, "length")) {
+                        int colon = indexOf(line, ':', valueStart, valueEnd);
+                        if (colon < 0) {
+                            throw new ParseException("Malformed call length: "
+                                    + line, valueStart);
+                        }
+                        minutes = parseInt(line, valueStart, colon);
+                        seconds = parseInt(line, colon + 1, valueEnd);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pos = valueEnd + 1;
+        }
+
+        if (datetime == null || from == null || to == null || minutes < 0) {
+            throw new ParseException("Incomplete call record: " + line, 0);
+        }
+        return new CallRecord(datetime, from, to, minutes, seconds);
+    }
+
+    private Date parseDate(CharSequence line, int start, int end)
+            throws ParseException {
+        try {
+            LocalDateTime ldt = LocalDateTime.parse(
+                    line.subSequence(start, end), DATE_FORMAT);
+            return Date.from(ldt.atZone(zone).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), start);
+        }
+    }
+
+    private static int parseInt(CharSequence s, int start, int end)
+            throws ParseException {
+        if (start == end) {
+            throw new ParseException("Empty number", start);
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ParseException("Invalid number", i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean matches(CharSequence s, int start, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (s.charAt(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        return indexOf(s, c, from, s.length());
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
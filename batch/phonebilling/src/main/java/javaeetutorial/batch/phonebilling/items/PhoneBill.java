@@ -51,10 +51,11 @@ public class PhoneBill implements Serializable {
     public void calculate(BigDecimal taxRate) {
         /* Compute the total amount and tax */
         this.taxRate = taxRate;
-        amountBase = new BigDecimal(0).setScale(2);
+        long baseCents = 0;
         for (CallRecord call : calls) {
-            amountBase = amountBase.add(call.getPrice());
+            baseCents += call.getPriceCents();
         }
+        amountBase = BigDecimal.valueOf(baseCents, 2);
         tax = amountBase.multiply(taxRate).setScale(2, RoundingMode.HALF_EVEN);
         amountTotal = amountBase.add(tax);
     }
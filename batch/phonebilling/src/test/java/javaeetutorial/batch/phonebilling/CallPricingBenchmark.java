@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calls priced per second by CallPricing and by the double and
+ * BigDecimal code that CallRecordProcessor used before, which also
+ * parsed the airtime price for every call. Run with:
+ * mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallPricingBenchmark {
+
+    private static final String AIRTIME_PRICE = "0.08";
+    private final long airPriceMicros = CallPricing.parseMicros(AIRTIME_PRICE);
+    private int next;
+
+    @Benchmark
+    public long fixedPoint() {
+        next++;
+        return CallPricing.priceCents(airPriceMicros, next % 7, next % 60);
+    }
+
+    @Benchmark
+    public BigDecimal doubleAndBigDecimal() {
+        next++;
+        double airPrice = Double.parseDouble(AIRTIME_PRICE);
+        double callPrice = airPrice * (1.0 * (next % 7) + (next % 60) / 60.0);
+        return new BigDecimal(callPrice).setScale(2, RoundingMode.HALF_EVEN);
+    }
+}
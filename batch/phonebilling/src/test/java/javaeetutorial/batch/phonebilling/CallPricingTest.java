@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.ParseException;
+import javaeetutorial.batch.phonebilling.items.CallRecord;
+import javaeetutorial.batch.phonebilling.items.PhoneBill;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Compares the fixed-point call prices and bill totals with the
+ * double and BigDecimal computation they replace.
+ */
+public class CallPricingTest {
+
+    /* The price of a call as CallRecordProcessor used to compute it */
+    private static BigDecimal oldPrice(String airtimePrice, int min, int sec) {
+        double airPrice = Double.parseDouble(airtimePrice);
+        double callPrice = airPrice * (1.0 * min + sec / 60.0);
+        return new BigDecimal(callPrice).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    /* The price of a call before rounding, to ten decimals */
+    private static BigDecimal exactPrice(String airtimePrice, int min, int sec) {
+        return new BigDecimal(airtimePrice)
+                .multiply(BigDecimal.valueOf(60L * min + sec))
+                .divide(BigDecimal.valueOf(60), 10, RoundingMode.DOWN);
+    }
+
+    private static BigDecimal newPrice(String airtimePrice, int min, int sec) {
+        long micros = CallPricing.parseMicros(airtimePrice);
+        return BigDecimal.valueOf(CallPricing.priceCents(micros, min, sec), 2);
+    }
+
+    @Test
+    public void testConfiguredPrice() {
+        for (int min = 0; min < 120; min++) {
+            for (int sec = 0; sec < 60; sec++) {
+                assertEquals(min + ":" + sec, oldPrice("0.08", min, sec),
+                             newPrice("0.08", min, sec));
+            }
+        }
+    }
+
+    @Test
+    public void testZeroDuration() {
+        assertEquals(0, CallPricing.priceCents(
+                CallPricing.parseMicros("0.08"), 0, 0));
+        assertEquals(0, CallPricing.priceCents(
+                CallPricing.parseMicros("99.99"), 0, 0));
+    }
+
+    @Test
+    public void testHalfCentTies() {
+        /* 30 seconds at an odd number of cents per minute */
+        assertEquals(new BigDecimal("0.00"), newPrice("0.01", 0, 30));
+        assertEquals(new BigDecimal("0.02"), newPrice("0.03", 0, 30));
+        assertEquals(new BigDecimal("0.02"), newPrice("0.05", 0, 30));
+        assertEquals(new BigDecimal("0.04"), newPrice("0.07", 0, 30));
+        assertEquals(new BigDecimal("1.24"), newPrice("2.49", 0, 30));
+        /* 0.125 and 0.135 */
+        assertEquals(new BigDecimal("0.12"), newPrice("0.25", 0, 30));
+        assertEquals(new BigDecimal("0.14"), newPrice("0.09", 1, 30));
+    }
+
+    @Test
+    public void testPricesAgainstOldComputation() {
+        for (int cents = 1; cents <= 500; cents++) {
+            String price = BigDecimal.valueOf(cents, 2).toPlainString();
+            for (int min = 0; min < 60; min += 7) {
+                for (int sec = 0; sec < 60; sec++) {
+                    BigDecimal exact = exactPrice(price, min, sec);
+                    BigDecimal actual = newPrice(price, min, sec);
+                    String what = price + " " + min + ":" + sec;
+                    assertEquals(what,
+                                 exact.setScale(2, RoundingMode.HALF_EVEN),
+                                 actual);
+                    /* The old computation differs only on exact ties,
+                     * where the binary error of the double decided */
+                    if (oldPrice(price, min, sec).compareTo(actual) != 0) {
+                        assertEquals(what, 0, exact.movePointRight(3)
+                                .remainder(BigDecimal.TEN)
+                                .compareTo(new BigDecimal(5)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeDuration() {
+        assertEquals(oldPrice("99.99", 100000, 59),
+                     newPrice("99.99", 100000, 59));
+        assertEquals(exactPrice("0.08", 1000000, 1)
+                             .setScale(2, RoundingMode.HALF_EVEN),
+                     newPrice("0.08", 1000000, 1));
+    }
+
+    @Test
+    public void testBillTotals() throws ParseException {
+        BigDecimal taxRate = new BigDecimal("0.07");
+        long[][] bills = {
+            { },
+            { 50 },                           /* tax 0.035 */
+            { 150 },                          /* tax 0.105 */
+            { 1, 2, 3, 4 },
+            { 999999999, 999999999, 12345 }   /* large totals */
+        };
+        for (long[] cents : bills) {
+            PhoneBill bill = new PhoneBill("555-0100");
+            for (long c : cents) {
+                CallRecord call = new CallRecord("01/01/2014 10:00",
+                        "555-0100", "555-0199", 1, 0);
+                call.setPriceCents(c);
+                bill.addCall(call);
+            }
+            bill.calculate(taxRate);
+
+            /* PhoneBill.calculate before the prices were in cents */
+            BigDecimal base = new BigDecimal(0).setScale(2);
+            for (CallRecord call : bill.getCalls()) {
+                base = base.add(call.getPrice());
+            }
+            BigDecimal tax = base.multiply(taxRate)
+                                 .setScale(2, RoundingMode.HALF_EVEN);
+            assertEquals(base, bill.getAmountBase());
+            assertEquals(tax, bill.getTax());
+            assertEquals(base.add(tax), bill.getAmountTotal());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reads compressed log files from an offset, and checks the input
+ * files of a checkpoint on restart.
+ */
+public class GzipLineReaderTest {
+
+    private static final int LINES = 100000;
+
+    private Path dir;
+    private Path file;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("gzip");
+        file = dir.resolve("calls-1.txt.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file));
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++)
+                writer.write(line(i) + "\n");
+        }
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.delete(file);
+        Files.delete(dir);
+    }
+
+    private static String line(int i) {
+        return String.format("line %06d", i);
+    }
+
+    @Test
+    public void testReadFromOffset() throws IOException {
+        long offset = line(0).length() + 1;
+        try (GzipLineReader reader =
+                new GzipLineReader(file, offset, Long.MAX_VALUE, executor)) {
+            assertEquals(offset, reader.getPosition());
+            assertEquals(line(1), reader.readLine());
+            String last = null;
+            String next;
+            while ((next = reader.readLine()) != null)
+                last = next;
+            assertEquals(line(LINES - 1), last);
+        }
+    }
+
+    @Test
+    public void testSkipFailureStopsDecompression() throws Exception {
+        /* The file is larger than the blocks read ahead, so the
+         * decompression task waits for the reader when skip fails */
+        Thread.currentThread().interrupt();
+        try {
+            new GzipLineReader(file, 1, Long.MAX_VALUE, executor);
+            fail("Skipped while interrupted");
+        } catch (IOException e) {
+            /* Expected */
+        } finally {
+            Thread.interrupted();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCheckFile() throws IOException {
+        List<Path> files = Arrays.asList(file);
+        LogFileReader.checkFile(files, 0, file.toString());
+        /* Checkpoints without a file name */
+        LogFileReader.checkFile(files, 0, null);
+        try {
+            LogFileReader.checkFile(files, 0, dir.resolve("calls-0.txt.gz").toString());
+            fail("Accepted a different file");
+        } catch (IOException e) {
+            /* Expected */
+        }
+        try {
+            LogFileReader.checkFile(files, 1, file.toString());
+            fail("Accepted a missing file");
+        } catch (IOException e) {
+            /* Expected */
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling.items;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Call records parsed per second by CallRecordParser and by the
+ * CallRecord(String) constructor. Run with: mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallRecordParserBenchmark {
+
+    private final String[] lines = CallRecordParserTest.entries(1024);
+    private final CallRecordParser parser = new CallRecordParser();
+    private int next;
+
+    private String nextLine() {
+        next = (next + 1) & (lines.length - 1);
+        return lines[next];
+    }
+
+    @Benchmark
+    public CallRecord parser() throws ParseException {
+        return parser.parse(nextLine());
+    }
+
+    @Benchmark
+    public CallRecord jsonParser() throws ParseException {
+        return new CallRecord(nextLine());
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.phonebilling.items;
+
+import java.text.ParseException;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Compares CallRecordParser with the CallRecord(String) constructor,
+ * which parses the log entries with a JsonParser.
+ */
+public class CallRecordParserTest {
+
+    private final CallRecordParser parser = new CallRecordParser();
+
+    /* A log entry like the ones CallRecordLogCreator writes */
+    static String entry(String datetime, String from, String to,
+                        String length) {
+        return String.format("{\"datetime\":\"%s\",\"from\":\"%s\","
+                + "\"to\":\"%s\",\"length\":\"%s\"}",
+                datetime, from, to, length);
+    }
+
+    /* Log entries with random fields, the same for every run */
+    static String[] entries(int count) {
+        Random rnd = new Random(42);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            String datetime = String.format("%02d/%02d/20%02d %02d:%02d",
+                    rnd.nextInt(12) + 1, rnd.nextInt(28) + 1,
+                    rnd.nextInt(30), rnd.nextInt(24), rnd.nextInt(60));
+            lines[i] = entry(datetime,
+                    String.format("555-01%02d", rnd.nextInt(50)),
+                    String.format("555-01%02d", rnd.nextInt(50) + 50),
+                    String.format("%02d:%02d", rnd.nextInt(100), rnd.nextInt(60)));
+        }
+        return lines;
+    }
+
+    private static void assertSameRecord(String line, CallRecord expected,
+                                         CallRecord actual) {
+        assertEquals(line, expected.getDatetime(), actual.getDatetime());
+        assertEquals(line, expected.getFromNumber(), actual.getFromNumber());
+        assertEquals(line, expected.getToNumber(), actual.getToNumber());
+        assertEquals(line, expected.getMinutes(), actual.getMinutes());
+        assertEquals(line, expected.getSeconds(), actual.getSeconds());
+    }
+
+    private void assertParsedAsBefore(String line) throws ParseException {
+        assertSameRecord(line, new CallRecord(line), parser.parse(line));
+    }
+
+    @Test
+    public void testGeneratedEntries() throws ParseException {
+        for (String line : entries(10000)) {
+            assertParsedAsBefore(line);
+        }
+    }
+
+    @Test
+    public void testLengthAndDateFields() throws ParseException {
+        assertParsedAsBefore(entry("03/01/2013 04:03", "555-0109",
+                                   "555-0112", "05:39"));
+        assertParsedAsBefore(entry("01/01/2000 00:00", "555-0101",
+                                   "555-0102", "00:00"));
+        assertParsedAsBefore(entry("12/31/2013 23:59", "555-0101",
+                                   "555-0102", "00:59"));
+        /* Lengths without padding or with more than two digits */
+        assertParsedAsBefore(entry("02/28/2014 12:30", "555-0101",
+                                   "555-0102", "7:5"));
+        assertParsedAsBefore(entry("02/28/2014 12:30", "555-0101",
+                                   "555-0102", "125:07"));
+        CallRecord call = parser.parse(entry("02/28/2014 12:30",
+                "555-0101", "555-0102", "125:07"));
+        assertEquals(125, call.getMinutes());
+        assertEquals(7, call.getSeconds());
+    }
+
+    @Test
+    public void testFieldOrderAndSpaces() throws ParseException {
+        assertParsedAsBefore("{\"length\":\"01:02\",\"to\":\"555-0150\","
+                + "\"from\":\"555-0101\",\"datetime\":\"03/01/2013 04:03\"}");
+        assertParsedAsBefore("{ \"datetime\" : \"03/01/2013 04:03\", "
+                + "\"from\" : \"555-0101\", \"to\" : \"555-0150\", "
+                + "\"length\" : \"01:02\" }");
+        /* Unknown fields are ignored */
+        assertParsedAsBefore("{\"datetime\":\"03/01/2013 04:03\","
+                + "\"carrier\":\"x\",\"from\":\"555-0101\","
+                + "\"to\":\"555-0150\",\"length\":\"01:02\"}");
+    }
+
+    @Test
+    public void testEscapedCharacters() throws ParseException {
+        /* Handled by the JSON parser */
+        assertParsedAsBefore("{\"datetime\":\"03/01/2013 04:03\","
+                + "\"from\":\"555\\u002d0101\",\"to\":\"555-0150\","
+                + "\"length\":\"01:02\"}");
+    }
+
+    @Test
+    public void testMalformedEntries() {
+        String[] lines = {
+            "",
+            "{}",
+            "{\"datetime\":\"03/01/2013 04:03\",\"from\":\"555-0101\","
+                    + "\"to\":\"555-0150\"}",
+            "{\"datetime\":\"03/01/2013 04:03\",\"from\":\"555-0101\","
+                    + "\"to\":\"555-0150\",\"length\":\"01:02",
+            entry("03/01/2013 04:03", "555-0101", "555-0150", "0102"),
+            entry("03/01/2013 04:03", "555-0101", "555-0150", "01:x2"),
+            entry("03/01/2013 04:03", "555-0101", "555-0150", ":02"),
+            entry("2013-03-01 04:03", "555-0101", "555-0150", "01:02")
+        };
+        for (String line : lines) {
+            try {
+                parser.parse(line);
+                fail("Parsed a malformed entry: " + line);
+            } catch (ParseException e) {
+                /* Expected */
+            }
+            try {
+                new CallRecord(line);
+                fail("The JSON parser accepted: " + line);
+            } catch (Exception e) {
+                /* The old constructor rejects it too */
+            }
+        }
+    }
+}
@@ -10,7 +10,9 @@ package javaeetutorial.batch.webserverlog;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.batch.api.listener.JobListener;
+import javax.batch.runtime.context.JobContext;
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
 import javax.inject.Named;
 
 @Dependent
@@ -18,6 +20,8 @@ import javax.inject.Named;
 public class InfoJobListener implements JobListener {
 
     private static final Logger logger = Logger.getLogger("InfoJobListener");
+    @Inject
+    private JobContext jobCtx;
     
     public InfoJobListener() { }
     
@@ -29,6 +33,13 @@ public class InfoJobListener implements JobListener {
     @Override
     public void afterJob() throws Exception {
         logger.log(Level.INFO, "The job has finished.");
+        /* Report the metrics collected by MetricsItemListener */
+        JobMetrics metrics = JobMetrics.get(jobCtx.getExecutionId());
+        if (metrics != null) {
+            for (String line : metrics.getSummary()) {
+                logger.log(Level.INFO, line);
+            }
+        }
     }
     
 }
@@ -15,6 +15,9 @@ public class ItemNumberCheckpoint implements Serializable {
     
     private static final long serialVersionUID = -7455017703127938364L;
     private long lineNum;
+    private int fileIndex;
+    private long offset;
+    private String fileName;
 
     public ItemNumberCheckpoint() {
         lineNum = 0;
@@ -27,4 +30,31 @@ public class ItemNumberCheckpoint implements Serializable {
     public void nextLine() {
         lineNum++;
     }
+
+    /* Index of the input file of the next line */
+    public int getFileIndex() {
+        return fileIndex;
+    }
+
+    public void setFileIndex(int fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+
+    /* Byte offset in the input file of the next line */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /* Name of the input file of the next line */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
 }
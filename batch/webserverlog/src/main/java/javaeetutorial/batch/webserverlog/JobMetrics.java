@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Metrics of the steps of a job execution.
+ * The metrics of the most recent executions are kept in a registry,
+ * so they can be queried while the job runs and after it finishes.
+ */
+public class JobMetrics {
+
+    private static final int MAX_EXECUTIONS = 16;
+    private static final Map<Long, JobMetrics> registry =
+            new LinkedHashMap<Long, JobMetrics>() {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Long, JobMetrics> eldest) {
+                    return size() > MAX_EXECUTIONS;
+                }
+            };
+
+    private final long executionId;
+    private final Map<String, StepMetrics> steps = new ConcurrentHashMap<>();
+
+    private JobMetrics(long executionId) {
+        this.executionId = executionId;
+    }
+
+    /* Get the metrics of a job execution, creating them if necessary */
+    public static JobMetrics forExecution(long executionId) {
+        synchronized (registry) {
+            JobMetrics metrics = registry.get(executionId);
+            if (metrics == null) {
+                metrics = new JobMetrics(executionId);
+                registry.put(executionId, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    /* Get the metrics of a job execution, or null if there are none */
+    public static JobMetrics get(long executionId) {
+        synchronized (registry) {
+            return registry.get(executionId);
+        }
+    }
+
+    public long getExecutionId() {
+        return executionId;
+    }
+
+    /* Get the metrics of a step, creating them if necessary */
+    public StepMetrics forStep(String stepName) {
+        StepMetrics metrics = steps.get(stepName);
+        if (metrics == null) {
+            metrics = new StepMetrics(stepName);
+            StepMetrics previous = steps.putIfAbsent(stepName, metrics);
+            if (previous != null) {
+                metrics = previous;
+            }
+        }
+        return metrics;
+    }
+
+    public Collection<StepMetrics> getSteps() {
+        return steps.values();
+    }
+
+    /* One line per step, for logging and for the Facelets pages */
+    public List<String> getSummary() {
+        List<String> lines = new ArrayList<>();
+        for (StepMetrics step : steps.values()) {
+            lines.add(step.toString());
+        }
+        return lines;
+    }
+}
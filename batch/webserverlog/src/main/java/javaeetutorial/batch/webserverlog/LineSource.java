@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/* A source of lines that knows the offset of the next line, in bytes
+ * of (uncompressed) text from the beginning of the file.
+ */
+public interface LineSource extends Closeable {
+
+    /* Return the next line without the line terminator,
+     * or null at the end of the input */
+    String readLine() throws IOException;
+
+    /* Byte offset of the next line to be read */
+    long getPosition();
+}
@@ -18,13 +18,17 @@ import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-/* Write the filtered items */
+/* Write the filtered items.
+ * Count the page views of the filtered items as they are written,
+ * so that the next step does not need to read the output file again. */
 @Dependent
 @Named("LogFilteredLineWriter")
 public class LogFilteredLineWriter implements ItemWriter {
 
     private String fileName;
     private BufferedWriter bwriter;
+    private String buyPage;
+    private VisitCounters counters;
     @Inject 
     private JobContext jobCtx;
 
@@ -32,6 +36,14 @@ public class LogFilteredLineWriter implements ItemWriter {
     public void open(Serializable ckpt) throws Exception {
         
         fileName = jobCtx.getProperties().getProperty("filtered_file_name");
+        buyPage = jobCtx.getProperties().getProperty("buy_page");
+        /* Continue counting from the checkpoint if this is a restart.
+         * Checkpoints written before the counters were added hold an
+         * ItemNumberCheckpoint, the count starts again in that case. */
+        if (ckpt instanceof VisitCounters)
+            counters = (VisitCounters) ckpt;
+        else
+            counters = new VisitCounters();
         /* If the job was restarted, continue writing at the end of the file.
          * Otherwise, overwrite the file. */
         if (ckpt != null)
@@ -43,6 +55,8 @@ public class LogFilteredLineWriter implements ItemWriter {
     @Override
     public void close() throws Exception {
         bwriter.close();
+        /* Make the counters available to the next step */
+        jobCtx.setTransientUserData(counters);
     }
 
     @Override
@@ -52,11 +66,12 @@ public class LogFilteredLineWriter implements ItemWriter {
             LogFilteredLine filtLine = (LogFilteredLine) items.get(i);
             bwriter.write(filtLine.toString());
             bwriter.newLine();
+            counters.visit(buyPage.equals(filtLine.getUrl()));
         }
     }
 
     @Override
     public Serializable checkpointInfo() throws Exception {
-        return new ItemNumberCheckpoint();
+        return counters;
     }
 }
@@ -7,7 +7,9 @@
  */
 package javaeetutorial.batch.webserverlog;
 
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 import javax.batch.api.chunk.ItemProcessor;
 import javax.batch.runtime.context.JobContext;
 import javax.inject.Inject;
@@ -24,8 +26,7 @@ import javax.inject.Named;
 @Named("LogLineProcessor")
 public class LogLineProcessor implements ItemProcessor {
 
-    private String[] browsers;
-    private int nbrowsers = 0;
+    private Set<String> browsers;
     @Inject
     private JobContext jobCtx;
 
@@ -34,23 +35,21 @@ public class LogLineProcessor implements ItemProcessor {
 
     @Override
     public Object processItem(Object item) {
-        /* Obtain a list of browsers we are interested in */
-        if (nbrowsers == 0) {
+        /* Obtain a set of browsers we are interested in */
+        if (browsers == null) {
             Properties props = jobCtx.getProperties();
-            nbrowsers = Integer.parseInt(props.getProperty("num_browsers"));
-            browsers = new String[nbrowsers];
+            int nbrowsers = Integer.parseInt(props.getProperty("num_browsers"));
+            browsers = new HashSet<>();
             for (int i = 1; i < nbrowsers + 1; i++) {
-                browsers[i - 1] = props.getProperty("browser_" + i);
+                browsers.add(props.getProperty("browser_" + i));
             }
         }
 
         LogLine logline = (LogLine) item;
         /* Filter for only the mobile/tablet browsers as specified */
-        for (int i = 0; i < nbrowsers; i++) {
-            if (logline.getBrowser().equals(browsers[i])) {
-                /* The new items have fewer fields */
-                return new LogFilteredLine(logline);
-            }
+        if (browsers.contains(logline.getBrowser())) {
+            /* The new items have fewer fields */
+            return new LogFilteredLine(logline);
         }
         return null;
     }
@@ -11,14 +11,25 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Resource;
 import javax.batch.api.chunk.ItemReader;
 import javax.batch.runtime.context.JobContext;
 import javax.inject.Inject;
 import javaeetutorial.batch.webserverlog.items.LogLine;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.Dependent;
 import javax.inject.Named;
 
-/* Reads lines from the input log file */
+/* Reads lines from the input log file.
+ * The log_file_name property names a file included with the application
+ * or, if there is no such file, the log files to read from the file
+ * system: a file, a directory or a glob pattern (see LogFileReader).
+ * Compressed (.gz) files are supported. */
 @Dependent
 @Named("LogLineReader")
 public class LogLineReader implements ItemReader {
@@ -26,8 +37,12 @@ public class LogLineReader implements ItemReader {
     private ItemNumberCheckpoint checkpoint;
     private String fileName;
     private BufferedReader breader;
+    private LogFileReader lreader;
     @Inject
     private JobContext jobCtx;
+    /* Decompresses gzip input ahead of the reader */
+    @Resource(name="java:comp/DefaultManagedExecutorService")
+    private ManagedExecutorService mExecService;
 
     public LogLineReader() {
     }
@@ -45,26 +60,61 @@ public class LogLineReader implements ItemReader {
          * (webserverlog/WEB-INF/classes/log1.txt) */
         fileName = jobCtx.getProperties().getProperty("log_file_name");
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        InputStream iStream = classLoader.getResourceAsStream(fileName);
-        breader = new BufferedReader(new InputStreamReader(iStream));
+        URL url = classLoader.getResource(fileName);
 
-        /* Continue where we left off if this is a restart */
-        for (int i = 0; i < checkpoint.getLineNum(); i++) {
-            breader.readLine();
+        List<Path> files;
+        if (url == null) {
+            /* Read the log files from the file system */
+            files = LogFileReader.resolve(fileName);
+        } else if ("file".equals(url.getProtocol())) {
+            files = Collections.singletonList(Paths.get(url.toURI()));
+        } else {
+            files = null;
+        }
+
+        if (files != null) {
+            /* Continue at the checkpoint position if this is a restart */
+            LogFileReader.checkFile(files, checkpoint.getFileIndex(),
+                                    checkpoint.getFileName());
+            lreader = new LogFileReader(files, checkpoint.getFileIndex(),
+                                        checkpoint.getOffset(), files.size(),
+                                        -1, mExecService);
+        } else {
+            /* The file is inside an archive and cannot be mapped,
+             * skip the lines we have already processed instead */
+            InputStream iStream = url.openStream();
+            breader = new BufferedReader(new InputStreamReader(iStream));
+            for (int i = 0; i < checkpoint.getLineNum(); i++) {
+                breader.readLine();
+            }
         }
     }
 
     @Override
     public void close() throws Exception {
-        breader.close();
+        if (lreader != null) {
+            lreader.close();
+        } else {
+            breader.close();
+        }
     }
 
     @Override
     public Object readItem() throws Exception {
         /* Return a LogLine object */
-        String entry = breader.readLine();
+        String entry;
+        if (lreader != null) {
+            entry = lreader.readLine();
+        } else {
+            entry = breader.readLine();
+        }
         if (entry != null) {
             checkpoint.nextLine();
+            if (lreader != null) {
+                checkpoint.setFileIndex(lreader.getFileIndex());
+                checkpoint.setFileName(lreader.getFileName());
+                checkpoint.setOffset(lreader.getPosition());
+            }
             return new LogLine(entry);
         } else {
             return null;
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/* Reads lines from a file through a memory-mapped window.
+ * The reader keeps track of the byte offset of the next line, so a
+ * restarted job can continue from a checkpoint without reading
+ * the lines before it again.
+ */
+public class MappedLineReader implements LineSource {
+
+    /* Size of the mapped region of the file */
+    private static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] lineBuf = new byte[256];
+
+    /* Read from the offset to the end of the file */
+    public MappedLineReader(Path file, long offset) throws IOException {
+        this(file, offset, Long.MAX_VALUE);
+    }
+
+    /* Read the lines that start in the range [offset, end) */
+    public MappedLineReader(Path file, long offset, long end)
+            throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.end = Math.min(end, size);
+        this.position = offset;
+        map(offset, WINDOW_SIZE);
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        int len = 0;
+        long pos = position;
+        while (pos < size) {
+            if (pos >= windowStart + window.limit()) {
+                map(pos, WINDOW_SIZE);
+            }
+            byte b = window.get((int) (pos - windowStart));
+            pos++;
+            if (b == '\n') {
+                break;
+            }
+            if (len == lineBuf.length) {
+                byte[] grown = new byte[len * 2];
+                System.arraycopy(lineBuf, 0, grown, 0, len);
+                lineBuf = grown;
+            }
+            lineBuf[len++] = b;
+        }
+        position = pos;
+        if (len > 0 && lineBuf[len - 1] == '\r') {
+            len--;
+        }
+        return new String(lineBuf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /* Map a region of the file starting at the given offset */
+    private void map(long start, int length) throws IOException {
+        windowStart = start;
+        long mapSize = Math.min(length, Math.max(0, size - start));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, mapSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.batch.api.chunk.listener.ItemProcessListener;
+import javax.batch.api.chunk.listener.ItemReadListener;
+import javax.batch.api.chunk.listener.ItemWriteListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/* Collects metrics for the read, process and write operations of a
+ * chunk step (see JobMetrics). Instead of logging every item, it logs
+ * one item out of every log_sample_items items, and at most one item
+ * every log_sample_millis milliseconds. Use 0 to disable either limit.
+ */
+@Dependent
+@Named("MetricsItemListener")
+public class MetricsItemListener implements ItemReadListener,
+        ItemProcessListener, ItemWriteListener {
+
+    private static final Logger logger =
+            Logger.getLogger("MetricsItemListener");
+
+    @Inject
+    private JobContext jobCtx;
+    @Inject
+    private StepContext stepCtx;
+
+    private StepMetrics metrics;
+    private long sampleItems;
+    private long sampleNanos;
+    private long itemCount;
+    private long lastLogTime;
+    private long readStart;
+    private long processStart;
+    private long writeStart;
+
+    public MetricsItemListener() { }
+
+    /* Initialize on the first call, once the contexts are available */
+    private StepMetrics metrics() {
+        if (metrics == null) {
+            Properties props = jobCtx.getProperties();
+            sampleItems = Long.parseLong(
+                    props.getProperty("log_sample_items"));
+            sampleNanos = 1000000L * Long.parseLong(
+                    props.getProperty("log_sample_millis"));
+            lastLogTime = System.nanoTime() - sampleNanos;
+            metrics = JobMetrics.forExecution(jobCtx.getExecutionId())
+                    .forStep(stepCtx.getStepName());
+        }
+        return metrics;
+    }
+
+    @Override
+    public void beforeRead() throws Exception {
+        metrics();
+        readStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterRead(Object item) throws Exception {
+        if (item != null) {
+            metrics().recordRead(System.nanoTime() - readStart);
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) throws Exception {
+        metrics().recordError();
+        logger.log(Level.WARNING, "Error reading entry", ex);
+    }
+
+    @Override
+    public void beforeProcess(Object item) throws Exception {
+        processStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) throws Exception {
+        long now = System.nanoTime();
+        metrics().recordProcess(now - processStart, result == null);
+        itemCount++;
+        if ((sampleItems == 0 || itemCount % sampleItems == 0)
+                && (sampleNanos == 0 || now - lastLogTime >= sampleNanos)) {
+            lastLogTime = now;
+            logger.log(Level.INFO, "Processed entry {0} ({1})",
+                       new Object[]{itemCount, item});
+        }
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception ex) throws Exception {
+        metrics().recordError();
+        logger.log(Level.WARNING, "Error processing entry {0}", item);
+    }
+
+    @Override
+    public void beforeWrite(List<Object> items) throws Exception {
+        writeStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterWrite(List<Object> items) throws Exception {
+        metrics().recordWrite(System.nanoTime() - writeStart, items.size());
+    }
+
+    @Override
+    public void onWriteError(List<Object> items, Exception ex)
+            throws Exception {
+        metrics().recordError();
+        logger.log(Level.WARNING, "Error writing {0} entries", items.size());
+    }
+}
@@ -11,14 +11,16 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
+import javaeetutorial.batch.webserverlog.items.LogFilteredLine;
 import javax.batch.api.Batchlet;
 import javax.batch.runtime.context.JobContext;
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-/* Batchlet artifact that counts the number of purchase page views
- * based on the filtered items. */
+/* Batchlet artifact that reports the number of purchase page views
+ * based on the filtered items. The previous step counts them while
+ * writing the filtered items. */
 @Dependent
 @Named("MobileBatchlet")
 public class MobileBatchlet implements Batchlet {
@@ -26,8 +28,8 @@ public class MobileBatchlet implements Batchlet {
     private String fileName;
     private String buyPage;
     private String fileOutName;
-    private int totalVisits = 0;
-    private int pageVisits = 0;
+    private long totalVisits = 0;
+    private long pageVisits = 0;
     @Inject
     JobContext jobCtx;
     
@@ -41,17 +43,26 @@ public class MobileBatchlet implements Batchlet {
         buyPage = jobCtx.getProperties().getProperty("buy_page");
         fileOutName = jobCtx.getProperties().getProperty("out_file_name");
         
-        /* Count from the output of the previous chunk step */
-        breader = new BufferedReader(new FileReader(fileName));
-        String line = breader.readLine();
-        while (line != null) {
-            String[] lineSplit = line.split(", ");
-            if (buyPage.compareTo(lineSplit[1]) == 0)
-                pageVisits++;
-            totalVisits++;
-            line = breader.readLine();
+        Object userData = jobCtx.getTransientUserData();
+        if (userData instanceof VisitCounters) {
+            /* Use the counters from the previous chunk step */
+            VisitCounters counters = (VisitCounters) userData;
+            pageVisits = counters.getPageVisits();
+            totalVisits = counters.getTotalVisits();
+        } else {
+            /* The previous step did not run in this execution (restart),
+             * count from its output file */
+            breader = new BufferedReader(new FileReader(fileName));
+            String line = breader.readLine();
+            while (line != null) {
+                LogFilteredLine filtLine = new LogFilteredLine(line);
+                if (buyPage.equals(filtLine.getUrl()))
+                    pageVisits++;
+                totalVisits++;
+                line = breader.readLine();
+            }
+            breader.close();
         }
-        breader.close();
         
         /* Write the result */
         try (BufferedWriter bwriter = 
@@ -65,7 +76,8 @@ public class MobileBatchlet implements Batchlet {
 
     @Override
     public void stop() throws Exception {
-        breader.close();
+        if (breader != null)
+            breader.close();
     }
     
 }
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Counters and latency histograms for the read, process and
+ * write operations of a chunk step.
+ */
+public class StepMetrics {
+
+    private final String stepName;
+    private final AtomicLong itemsFiltered = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final LatencyHistogram read = new LatencyHistogram();
+    private final LatencyHistogram process = new LatencyHistogram();
+    private final LatencyHistogram write = new LatencyHistogram();
+    private final AtomicLong itemsWritten = new AtomicLong();
+
+    public StepMetrics(String stepName) {
+        this.stepName = stepName;
+    }
+
+    public String getStepName() {
+        return stepName;
+    }
+
+    /* Number of items read, processed and written */
+    public long getItemsRead() {
+        return read.getCount();
+    }
+
+    public long getItemsProcessed() {
+        return process.getCount();
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten.get();
+    }
+
+    /* Number of items the processor discarded */
+    public long getItemsFiltered() {
+        return itemsFiltered.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /* Latencies of single reads, single process calls and chunk writes */
+    public LatencyHistogram getReadLatency() {
+        return read;
+    }
+
+    public LatencyHistogram getProcessLatency() {
+        return process;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return write;
+    }
+
+    void recordRead(long nanos) {
+        read.record(nanos);
+    }
+
+    void recordProcess(long nanos, boolean filtered) {
+        process.record(nanos);
+        if (filtered) {
+            itemsFiltered.incrementAndGet();
+        }
+    }
+
+    void recordWrite(long nanos, int items) {
+        write.record(nanos);
+        itemsWritten.addAndGet(items);
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Step %s: read %d, processed %d, filtered %d, "
+                + "written %d, errors %d; read [%s]; process [%s]; write [%s]",
+                stepName, getItemsRead(), getItemsProcessed(),
+                getItemsFiltered(), getItemsWritten(), getErrors(),
+                read, process, write);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.batch.webserverlog;
+
+import java.io.Serializable;
+
+/* Page view counters for the filtered items.
+ * The writer updates them as it writes the filtered lines and saves
+ * them in its checkpoint, so they are correct after a restart.
+ */
+public class VisitCounters implements Serializable {
+
+    private static final long serialVersionUID = 4870385525412317845L;
+    private long totalVisits;
+    private long pageVisits;
+
+    public VisitCounters() {
+        totalVisits = 0;
+        pageVisits = 0;
+    }
+
+    public long getTotalVisits() {
+        return totalVisits;
+    }
+
+    public long getPageVisits() {
+        return pageVisits;
+    }
+
+    /* Count a page view, and whether it is a view of the page we track */
+    public void visit(boolean trackedPage) {
+        totalVisits++;
+        if (trackedPage) {
+            pageVisits++;
+        }
+    }
+}
@@ -13,8 +13,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javaeetutorial.batch.webserverlog.JobMetrics;
 import javax.batch.operations.JobOperator;
 import javax.batch.runtime.BatchRuntime;
 import javax.enterprise.context.SessionScoped;
@@ -66,6 +69,15 @@ public class JsfBean implements Serializable {
         return jobOperator.getJobExecution(execID).getBatchStatus().toString();
     }
     
+    /* Show the metrics of the job while it runs and after it finishes */
+    public List<String> getMetrics() {
+        JobMetrics metrics = JobMetrics.get(execID);
+        if (metrics == null) {
+            return Collections.emptyList();
+        }
+        return metrics.getSummary();
+    }
+    
     public boolean isCompleted() {
         return (getJobStatus().compareTo("COMPLETED") == 0);
     }
@@ -21,9 +21,14 @@ public class LogFilteredLine {
         
         /* Construct from an output log line */
         public LogFilteredLine(String line) {
-		String[] result = line.split(", ");
-		this.ipaddr = result[0];
-		this.url = result[1];
+		int end1 = line.indexOf(", ");
+		int end2 = line.indexOf(", ", end1 + 2);
+		this.ipaddr = line.substring(0, end1);
+		this.url = line.substring(end1 + 2, end2 < 0 ? line.length() : end2);
+	}
+	
+	public String getUrl() {
+		return url;
 	}
 	
 	@Override
@@ -25,14 +25,21 @@ public class LogLine {
         this.url = url;
     }
 
-    /* Construct an item from a log line */
+    /* Construct an item from a log line.
+     * The fields are separated by ", ", find them with indexOf
+     * instead of String.split, which would use a regular expression. */
     public LogLine(String line) {
-        //System.out.println(line);
-        String[] result = line.split(", ");
-        this.datetime = result[0];
-        this.ipaddr = result[1];
-        this.browser = result[2];
-        this.url = result[3];
+        int end1 = line.indexOf(", ");
+        int end2 = line.indexOf(", ", end1 + 2);
+        int end3 = line.indexOf(", ", end2 + 2);
+        if (end1 < 0 || end2 < 0 || end3 < 0) {
+            throw new IllegalArgumentException("Malformed log line: " + line);
+        }
+        int end4 = line.indexOf(", ", end3 + 2);
+        this.datetime = line.substring(0, end1);
+        this.ipaddr = line.substring(end1 + 2, end2);
+        this.browser = line.substring(end2 + 2, end3);
+        this.url = line.substring(end3 + 2, end4 < 0 ? line.length() : end4);
     }
     
     /* For logging purposes */
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package com.forest.ejb;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Read-through cache of the catalog pages and counts.
+ * The catalog is read on every page and changes rarely, so ProductBean
+ * and CategoryBean keep their query results here. The cache holds at
+ * most MAX_ENTRIES results, evicting the least recently used, and
+ * each result expires after TTL_MILLIS. The facades invalidate their
+ * entries when the catalog changes. Each region has a generation that
+ * changes when it is invalidated, and a result is stored only if the
+ * generation did not change while it was queried. The methods are
+ * synchronized because even a lookup updates the order of the entries.
+ *
+ * @author markito
+ */
+@Named("catalogCache")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Singleton
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class CatalogCache {
+
+    private static final Logger logger =
+            Logger.getLogger(CatalogCache.class.getCanonicalName());
+
+    public static final String PRODUCTS = "Product:";
+    public static final String CATEGORIES = "Category:";
+    private static final int MAX_ENTRIES = 500;
+    private static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final LinkedHashMap<String, Entry> entries;
+    /* Generation by region */
+    private final Map<String, Long> generations = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CatalogCache() {
+        /* Access order, the eldest entry is the least recently used */
+        entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > MAX_ENTRIES) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param key the query and its parameters
+     * @return the cached result, or null if it is not cached or expired
+     */
+    public synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Read before running the query whose result is stored with put.
+     * @param key the query and its parameters
+     * @return the generation of the region of the key
+     */
+    public synchronized long getGeneration(String key) {
+        Long generation = generations.get(region(key));
+        return (generation == null) ? 0 : generation;
+    }
+
+    /**
+     * Stores a result, unless its region was invalidated since the
+     * query started, because the result may then be stale.
+     * @param key the query and its parameters
+     * @param value the result
+     * @param generation the value of getGeneration before the query
+     */
+    public synchronized void put(String key, Object value, long generation) {
+        if (generation != getGeneration(key)) {
+            return;
+        }
+        entries.put(key, new Entry(value, System.currentTimeMillis() + TTL_MILLIS));
+    }
+
+    /**
+     * Removes the entries of a region, now and again when the current
+     * transaction commits. Both change the generation of the region, so
+     * a query that started before the commit does not store its result.
+     * @param prefix PRODUCTS or CATEGORIES
+     */
+    public synchronized void invalidate(final String prefix) {
+        remove(prefix);
+        if (txRegistry.getTransactionKey() != null) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        remove(prefix);
+                    }
+                }
+            });
+        }
+    }
+
+    private synchronized void remove(String prefix) {
+        generations.put(prefix, getGeneration(prefix) + 1);
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        logger.log(Level.FINE, "Invalidated {0} entries", prefix);
+    }
+
+    /* The region of a key is its prefix, up to the first colon */
+    private static String region(String key) {
+        return key.substring(0, key.indexOf(':') + 1);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    private static class Entry {
+        final Object value;
+        final long expires;
+
+        Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
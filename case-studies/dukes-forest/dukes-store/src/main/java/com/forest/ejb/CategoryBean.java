@@ -13,6 +13,10 @@
 package com.forest.ejb;
 
 import com.forest.entity.Category;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -25,6 +29,9 @@ import javax.persistence.PersistenceContext;
 public class CategoryBean extends AbstractFacade<Category> {
     @PersistenceContext(unitName="forestPU")
     private EntityManager em;
+    
+    @EJB
+    private CatalogCache cache;
 
     @Override
     protected EntityManager getEntityManager() {
@@ -34,5 +41,68 @@ public class CategoryBean extends AbstractFacade<Category> {
     public CategoryBean() {
         super(Category.class);
     }
+    
+    /* The category pages and counts are cached, see CatalogCache */
+    
+    @Override
+    public int count() {
+        String key = CatalogCache.CATEGORIES + "count";
+        Integer count = (Integer) cache.get(key);
+        if (count == null) {
+            long generation = cache.getGeneration(key);
+            count = super.count();
+            cache.put(key, count, generation);
+        }
+        return count;
+    }
+    
+    @Override
+    public List<Category> findAll() {
+        return cached(CatalogCache.CATEGORIES + "all", null);
+    }
+    
+    @Override
+    public List<Category> findRange(int[] range) {
+        return cached(CatalogCache.CATEGORIES + range[0] + "-" + range[1], range);
+    }
+    
+    /* Removing a category also removes its products */
+    
+    @Override
+    public void create(Category entity) {
+        super.create(entity);
+        invalidate();
+    }
+    
+    @Override
+    public void edit(Category entity) {
+        super.edit(entity);
+        invalidate();
+    }
+    
+    @Override
+    public void remove(Category entity) {
+        super.remove(entity);
+        invalidate();
+    }
+    
+    private void invalidate() {
+        cache.invalidate(CatalogCache.CATEGORIES);
+        cache.invalidate(CatalogCache.PRODUCTS);
+    }
+    
+    /* The cached lists are shared, so they can not be modified */
+    @SuppressWarnings("unchecked")
+    private List<Category> cached(String key, int[] range) {
+        List<Category> result = (List<Category>) cache.get(key);
+        if (result == null) {
+            long generation = cache.getGeneration(key);
+            List<Category> list = (range == null) ? super.findAll() 
+                                                  : super.findRange(range);
+            result = Collections.unmodifiableList(new ArrayList<>(list));
+            cache.put(key, result, generation);
+        }
+        return result;
+    }
 
 }
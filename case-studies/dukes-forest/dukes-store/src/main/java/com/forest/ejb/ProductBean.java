@@ -9,9 +9,12 @@ package com.forest.ejb;
 
 import com.forest.entity.Category;
 import com.forest.entity.Product;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -31,6 +34,9 @@ public class ProductBean extends AbstractFacade<Product> {
     
     @PersistenceContext(unitName="forestPU")
     private EntityManager em;
+    
+    @EJB
+    private CatalogCache cache;
 
     @Override
     protected EntityManager getEntityManager() {
@@ -43,25 +49,106 @@ public class ProductBean extends AbstractFacade<Product> {
 
     /**
      * Example usage of JPA CriteriaBuilder. You can also use NamedQueries
+     * The pages are cached, see CatalogCache.
      * @param range
      * @param categoryId
      * @return 
      */
     public List<Product> findByCategory(int[] range, int categoryId) {       
-         Category cat = new Category();
-         cat.setId(categoryId);
-         
-         CriteriaBuilder qb = em.getCriteriaBuilder();
-         CriteriaQuery<Product> query = qb.createQuery(Product.class);
-         Root<Product> product = query.from(Product.class);
-         query.where(qb.equal(product.get("category"), cat));
+        String key = CatalogCache.PRODUCTS + "category=" + categoryId 
+                + ":" + range[0] + "-" + range[1];
+        @SuppressWarnings("unchecked")
+        List<Product> result = (List<Product>) cache.get(key);
+        if (result != null) {
+            return result;
+        }
+        long generation = cache.getGeneration(key);
+        
+        Category cat = new Category();
+        cat.setId(categoryId);
+
+        CriteriaBuilder qb = em.getCriteriaBuilder();
+        CriteriaQuery<Product> query = qb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        query.where(qb.equal(product.get("category"), cat));
+
+        result = cacheList(key, this.findRange(range, query), generation);
+
+        logger.log(Level.FINEST, "Product List size: {0}", result.size());
 
-         List<Product> result = this.findRange(range, query);
-         
-         logger.log(Level.FINEST, "Product List size: {0}", result.size());
-         
         return result;
     }
     
+    /**
+     * @param categoryId
+     * @return the number of products in a category
+     */
+    public int countByCategory(int categoryId) {
+        String key = CatalogCache.PRODUCTS + "category=" + categoryId + ":count";
+        Integer count = (Integer) cache.get(key);
+        if (count == null) {
+            long generation = cache.getGeneration(key);
+            Category cat = new Category();
+            cat.setId(categoryId);
+
+            CriteriaBuilder qb = em.getCriteriaBuilder();
+            CriteriaQuery<Long> query = qb.createQuery(Long.class);
+            Root<Product> product = query.from(Product.class);
+            query.select(qb.count(product));
+            query.where(qb.equal(product.get("category"), cat));
+            count = em.createQuery(query).getSingleResult().intValue();
+            cache.put(key, count, generation);
+        }
+        return count;
+    }
+    
+    @Override
+    public int count() {
+        String key = CatalogCache.PRODUCTS + "count";
+        Integer count = (Integer) cache.get(key);
+        if (count == null) {
+            long generation = cache.getGeneration(key);
+            count = super.count();
+            cache.put(key, count, generation);
+        }
+        return count;
+    }
     
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Product> findRange(int[] range) {
+        String key = CatalogCache.PRODUCTS + range[0] + "-" + range[1];
+        List<Product> result = (List<Product>) cache.get(key);
+        if (result == null) {
+            long generation = cache.getGeneration(key);
+            result = cacheList(key, super.findRange(range), generation);
+        }
+        return result;
+    }
+    
+    @Override
+    public void create(Product entity) {
+        super.create(entity);
+        cache.invalidate(CatalogCache.PRODUCTS);
+    }
+    
+    @Override
+    public void edit(Product entity) {
+        super.edit(entity);
+        cache.invalidate(CatalogCache.PRODUCTS);
+    }
+    
+    @Override
+    public void remove(Product entity) {
+        super.remove(entity);
+        cache.invalidate(CatalogCache.PRODUCTS);
+    }
+    
+    /* The cached lists are shared, so they can not be modified */
+    private List<Product> cacheList(String key, List<Product> list,
+                                    long generation) {
+        List<Product> result = Collections.unmodifiableList(new ArrayList<>(list));
+        cache.put(key, result, generation);
+        return result;
+    }
 }
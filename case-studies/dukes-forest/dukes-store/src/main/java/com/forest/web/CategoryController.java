@@ -79,7 +79,7 @@ public class CategoryController implements Serializable {
     }
 
     public PageNavigation prepareView() {
-        current = (Category) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
         return PageNavigation.VIEW; //.getText();
     }
@@ -103,7 +103,7 @@ public class CategoryController implements Serializable {
     }
 
     public PageNavigation prepareEdit() {
-        current = (Category) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
         return PageNavigation.EDIT;
     }
@@ -120,7 +120,7 @@ public class CategoryController implements Serializable {
     }
 
     public PageNavigation destroy() {
-        current = (Category) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
         performDestroy();
         recreateModel();
@@ -149,6 +149,13 @@ public class CategoryController implements Serializable {
         }
     }
 
+    /* The listed items are shared through the catalog cache, so the
+     * item to view or change is read again */
+    private Category findRowItem() {
+        Category row = (Category) getItems().getRowData();
+        return getFacade().find(row.getId());
+    }
+
     private void updateCurrentItem() {
         int count = getFacade().count();
         if (selectedItemIndex >= count) {
@@ -160,7 +167,8 @@ public class CategoryController implements Serializable {
             }
         }
         if (selectedItemIndex >= 0) {
-            current = getFacade().findRange(new int[]{selectedItemIndex, selectedItemIndex + 1}).get(0);
+            current = getFacade().find(getFacade().findRange(
+                    new int[]{selectedItemIndex, selectedItemIndex + 1}).get(0).getId());
         }
     }
 
@@ -138,6 +138,9 @@ public class ProductController implements Serializable {
             pagination = new AbstractPaginationHelper(AbstractPaginationHelper.DEFAULT_SIZE) {
                 @Override
                 public int getItemsCount() {
+                    if (categoryId != 0) {
+                        return getFacade().countByCategory(categoryId);
+                    }
                     return getFacade().count();
                 }
 
@@ -175,7 +178,7 @@ public class ProductController implements Serializable {
     }
 
     public PageNavigation prepareView() {
-        current = (Product) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
         return PageNavigation.VIEW;
     }
@@ -208,7 +211,7 @@ public class ProductController implements Serializable {
     }
 
     public PageNavigation prepareEdit() {
-        current = (Product) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
 
         return PageNavigation.EDIT;
@@ -229,7 +232,7 @@ public class ProductController implements Serializable {
     }
 
     public PageNavigation destroy() {
-        current = (Product) getItems().getRowData();
+        current = findRowItem();
         selectedItemIndex = pagination.getPageFirstItem() + getItems().getRowIndex();
         performDestroy();
         recreateModel();
@@ -258,6 +261,13 @@ public class ProductController implements Serializable {
         }
     }
 
+    /* The listed items are shared through the catalog cache, so the
+     * item to view or change is read again */
+    private Product findRowItem() {
+        Product row = (Product) getItems().getRowData();
+        return getFacade().find(row.getId());
+    }
+
     private void updateCurrentItem() {
         int count = getFacade().count();
         if (selectedItemIndex >= count) {
@@ -269,7 +279,8 @@ public class ProductController implements Serializable {
             }
         }
         if (selectedItemIndex >= 0) {
-            current = getFacade().findRange(new int[]{selectedItemIndex, selectedItemIndex + 1}).get(0);
+            current = getFacade().find(getFacade().findRange(
+                    new int[]{selectedItemIndex, selectedItemIndex + 1}).get(0).getId());
         }
     }
 
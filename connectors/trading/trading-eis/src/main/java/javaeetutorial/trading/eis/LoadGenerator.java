@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.trading.eis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Sends orders to a trade execution server and reports the throughput
+ * and the latency of the responses. Each connection sends its orders
+ * one after the other from its own thread.
+ *
+ * Usage: TradeExecServer load [host] [port] [connections] [orders]
+ * where orders is the number of orders per connection.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) {
+        String host = (args.length > 0) ? args[0] : "localhost";
+        final int port = (args.length > 1) ? Integer.parseInt(args[1]) : 4004;
+        int connections = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+        final int orders = (args.length > 3) ? Integer.parseInt(args[3]) : 2000;
+
+        System.out.println(String.format("Sending %d orders on %d connections to %s:%d",
+                orders, connections, host, port));
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        List<Future<long[]>> results = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            results.add(pool.submit(new Connection(host, port, orders)));
+        }
+
+        long[] latencies = new long[connections * orders];
+        int count = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] connLatencies = result.get();
+                System.arraycopy(connLatencies, 0, latencies, count,
+                                 connLatencies.length);
+                count += connLatencies.length;
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            System.out.println("Load test failed: " + ex);
+            pool.shutdownNow();
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(latencies, 0, count);
+        System.out.println(String.format("%d orders in %.2f s, %.0f orders/s",
+                count, elapsed / 1e9, count / (elapsed / 1e9)));
+        System.out.println(String.format("Latency p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                percentile(latencies, count, 50) / 1e6,
+                percentile(latencies, count, 99) / 1e6,
+                latencies[count - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, int count, int p) {
+        int index = (int) Math.ceil(count * p / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /* One client connection, returns the latency of each order */
+    private static class Connection implements Callable<long[]> {
+
+        private final String host;
+        private final int port;
+        private final int orders;
+
+        Connection(String host, int port, int orders) {
+            this.host = host;
+            this.port = port;
+            this.orders = orders;
+        }
+
+        @Override
+        public long[] call() throws IOException {
+            long[] latencies = new long[orders];
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                PrintWriter out = new PrintWriter(socket.getOutputStream());
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream()));
+                /* Skip greeting */
+                in.readLine(); in.readLine();
+                for (int i = 0; i < orders; i++) {
+                    long sent = System.nanoTime();
+                    out.print("BUY 100 YYYY MARKET\n");
+                    out.flush();
+                    if (in.readLine() == null) {
+                        throw new IOException("Connection closed by the server");
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+                out.print("EXIT\n");
+                out.flush();
+                in.readLine();
+            }
+            return latencies;
+        }
+    }
+}
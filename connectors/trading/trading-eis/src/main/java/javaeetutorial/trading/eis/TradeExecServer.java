@@ -7,57 +7,269 @@
  */
 package javaeetutorial.trading.eis;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/* Simulates the EIS of the trading example.
+ * One thread waits on a selector for all client connections and reads
+ * their commands. Commands are processed on a pool of worker threads,
+ * in order for each connection, and the responses are written without
+ * blocking. The server handles thousands of connections with a few
+ * threads.
+ *
+ * Run with the argument "load" to start the load generator instead
+ * (see LoadGenerator).
+ */
 public class TradeExecServer implements Runnable {
-    
-    private Socket client;
-    
+
+    private static final int PORT = 4004;
+    /* Longest command accepted, a batch of a few thousand orders */
+    private static final int MAX_LINE = 1024 * 1024;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final TradeProcessor tradeproc;
+    /* Interest changes requested by worker threads */
+    private final Queue<Client> pendingWrites;
+
     public static void main(String[] args) throws IOException {
-        
-        ServerSocket server = new ServerSocket(4004);
-        System.out.println("Trade execution server listening on port 4004.");
-        
-        while (true) {
-            Socket client = server.accept();
-            Thread sthread = new Thread(new TradeExecServer(client));
-            sthread.start();
+
+        if (args.length > 0 && args[0].equals("load")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
+        int nthreads = Runtime.getRuntime().availableProcessors();
+        TradeExecServer server = new TradeExecServer(PORT, nthreads);
+        System.out.println("Trade execution server listening on port 4004.");
+        server.run();
     }
-    
-    public TradeExecServer(Socket client) {
-        this.client = client;
+
+    public TradeExecServer(int port, int nthreads) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(nthreads);
+        tradeproc = new TradeProcessor();
+        pendingWrites = new ConcurrentLinkedQueue<>();
     }
 
+    /* Event loop */
     @Override
     public void run() {
-        String inline;
-        String outline;
         try {
-            TradeProcessor tradeproc = new TradeProcessor();
-            PrintWriter out = new PrintWriter(client.getOutputStream(), true);
-            InputStreamReader isr = new InputStreamReader(client.getInputStream());
-            BufferedReader in = new BufferedReader(isr);
-            
-            System.out.println("Client connected.");
-            out.println(tradeproc.getGreeting());
-            out.println(tradeproc.getReady());
-            
-            while ((inline = in.readLine()) != null) {
-                System.out.println("Received: " + inline);
-                outline = tradeproc.processCommand(inline);
-                System.out.println("Sent: " + outline);
-                out.println(outline);
-                if (outline.compareTo("BYE Closing connection.") == 0) {
+            while (true) {
+                selector.select();
+                Client pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.watchWrites();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        /* Workers close connections after EXIT */
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Client client = (Client) key.attachment();
+                            if (key.isReadable()) {
+                                client.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                client.write();
+                            }
+                        }
+                    } catch (IOException | CancelledKeyException ex) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Server stopped: " + ex);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Client client = new Client(channel, key);
+        key.attach(client);
+        client.respond(tradeproc.getGreeting());
+        client.respond(tradeproc.getReady());
+        client.write();
+    }
+
+    /* A client connection. The read buffer and the line are used by
+     * the selector thread only. The commands are processed by one
+     * worker at a time, and the output buffer is shared by the worker
+     * and the selector thread. */
+    private class Client implements Runnable {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(8192);
+        private final StringBuilder line = new StringBuilder(128);
+        private final ArrayDeque<String> commands = new ArrayDeque<>();
+        private boolean processing;
+        private final Object outLock = new Object();
+        private ByteBuffer out = ByteBuffer.allocate(8192);
+        private boolean closing;
+
+        Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /* Called by the selector thread when there is data to read */
+        void read() throws IOException {
+            int n = channel.read(in);
+            if (n < 0) {
+                throw new IOException("Client disconnected.");
+            }
+            in.flip();
+            boolean received = false;
+            while (in.hasRemaining()) {
+                char c = (char) in.get();
+                if (c == '\n') {
+                    synchronized (this) {
+                        commands.add(line.toString());
+                    }
+                    line.setLength(0);
+                    received = true;
+                } else if (c != '\r') {
+                    if (line.length() == MAX_LINE) {
+                        throw new IOException("Command too long.");
+                    }
+                    line.append(c);
+                }
+            }
+            in.clear();
+            if (received) {
+                synchronized (this) {
+                    if (processing) {
+                        return;
+                    }
+                    processing = true;
+                }
+                workers.execute(this);
+            }
+        }
+
+        /* Called by a worker thread to process the commands received */
+        @Override
+        public void run() {
+            while (true) {
+                String command;
+                synchronized (this) {
+                    command = commands.poll();
+                    if (command == null) {
+                        processing = false;
+                        break;
+                    }
+                }
+                String outline;
+                try {
+                    outline = tradeproc.processCommand(command);
+                } catch (RuntimeException ex) {
+                    outline = "ERROR Invalid command.";
+                }
+                respond(outline);
+                if (outline.endsWith("BYE Closing connection.")) {
+                    synchronized (outLock) {
+                        closing = true;
+                    }
                     break;
                 }
             }
-            client.close();
-        } catch (IOException ex) { }
+            try {
+                write();
+            } catch (IOException | CancelledKeyException ex) {
+                close();
+            }
+        }
+
+        /* Append a response line to the output buffer */
+        void respond(String outline) {
+            synchronized (outLock) {
+                int needed = outline.length() + 1;
+                if (out.remaining() < needed) {
+                    ByteBuffer bigger = ByteBuffer.allocate(
+                            Math.max(out.capacity() * 2, out.position() + needed));
+                    out.flip();
+                    bigger.put(out);
+                    out = bigger;
+                }
+                for (int i = 0; i < outline.length(); i++) {
+                    out.put((byte) outline.charAt(i));
+                }
+                out.put((byte) '\n');
+            }
+        }
+
+        /* Write as much of the output as the socket takes. If some is
+         * left, the selector thread writes it when the socket is ready. */
+        void write() throws IOException {
+            boolean done;
+            synchronized (outLock) {
+                out.flip();
+                channel.write(out);
+                out.compact();
+                done = (out.position() == 0);
+                if (done && closing) {
+                    close();
+                    return;
+                }
+            }
+            if (done) {
+                if (key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /* Called by the selector thread */
+        void watchWrites() {
+            try {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (CancelledKeyException ex) { }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) { }
+        }
     }
 }
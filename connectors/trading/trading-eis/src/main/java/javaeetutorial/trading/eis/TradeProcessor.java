@@ -7,15 +7,13 @@
  */
 package javaeetutorial.trading.eis;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
+/* Processes the commands of the clients. The server shares one
+ * instance among its worker threads, so it keeps no state. */
 public class TradeProcessor {
     
-    Random random;
-    
-    public TradeProcessor() {
-        random = new Random();
-    }
+    public TradeProcessor() { }
     
     public String getGreeting() {
         return "WELCOME MegaTrade Execution Platform.";
@@ -25,13 +23,44 @@ public class TradeProcessor {
         return "READY Accepting trade orders for execution.";
     }
     
+    /* Commands may start with a request ID, such as "@42 BUY ...".
+     * The response then starts with the same ID, so that clients
+     * can send several commands before reading the responses.
+     * Errors keep the ID too, otherwise the client waits forever. */
     public String processCommand(String command) {
+        if (command.startsWith("@")) {
+            int space = command.indexOf(' ');
+            if (space > 0) {
+                String id = command.substring(0, space);
+                return id + " " + tryOrder(command.substring(space + 1));
+            }
+        }
+        return tryOrder(command);
+    }
+    
+    /* A malformed order, such as "BUY x", gets an error response */
+    private String tryOrder(String command) {
+        try {
+            return processOrder(command);
+        } catch (RuntimeException e) {
+            return "ERROR Invalid command.";
+        }
+    }
+    
+    private String processOrder(String command) {
         String ret;
         String[] words = command.split(" ");
         switch(words[0]) {
             case "EXIT":
                 ret = "BYE Closing connection.";
                 break;
+            case "PING":
+                /* Keep-alive check from the resource adapter */
+                ret = "PONG";
+                break;
+            case "BATCH":
+                ret = processBatch(command);
+                break;
             case "BUY":
             case "SELL":
                 int nshares = Integer.parseInt(words[1]);
@@ -42,7 +71,7 @@ public class TradeProcessor {
                     if (price != -1) {
                         double total = nshares * price;
                         double fee = 0.005 * total;
-                        int orderNumber = random.nextInt(10000);
+                        int orderNumber = ThreadLocalRandom.current().nextInt(10000);
                         ret = String.format("EXECUTED #%d TOTAL %.2f FEE %.2f",
                                             orderNumber, total, fee);
                     } else
@@ -57,9 +86,27 @@ public class TradeProcessor {
         return ret;
     }
     
+    /* A batch of orders in one line, such as
+     * "BATCH 2;BUY 100 YYYY MARKET;SELL 50 ZZZZ MARKET".
+     * The responses are returned in one line in the same order:
+     * "RESULTS 2;EXECUTED #12 TOTAL ...;EXECUTED #13 TOTAL ..." */
+    private String processBatch(String command) {
+        String[] orders = command.split(";");
+        StringBuilder ret = new StringBuilder(64 * orders.length);
+        ret.append("RESULTS ").append(orders.length - 1);
+        for (int i = 1; i < orders.length; i++) {
+            ret.append(';');
+            if (orders[i].startsWith("BATCH"))
+                ret.append("ERROR Nested batches not supported.");
+            else
+                ret.append(tryOrder(orders[i]));
+        }
+        return ret.toString();
+    }
+    
     /* Return a random price */
     public double getPrice(String t) {
-        return 100.0 + 0.01*(random.nextInt(5000) - 2500);
+        return 100.0 + 0.01*(ThreadLocalRandom.current().nextInt(5000) - 2500);
     }
     
 }
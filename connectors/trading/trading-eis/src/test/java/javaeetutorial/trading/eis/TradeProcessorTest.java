@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.trading.eis;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Every response to a pipelined command must keep the request ID,
+ * even when the command is malformed.
+ */
+public class TradeProcessorTest {
+
+    private final TradeProcessor tradeproc = new TradeProcessor();
+
+    @Test
+    public void testPipelinedOrder() {
+        String resp = tradeproc.processCommand("@1 BUY 100 YYYY MARKET");
+        assertTrue(resp, resp.startsWith("@1 EXECUTED #"));
+    }
+
+    @Test
+    public void testMalformedPipelinedOrder() {
+        assertEquals("@7 ERROR Invalid command.",
+                     tradeproc.processCommand("@7 BUY x YYYY MARKET"));
+        assertEquals("@8 ERROR Invalid command.",
+                     tradeproc.processCommand("@8 SELL"));
+        assertEquals("@9 ERROR Unknown command.",
+                     tradeproc.processCommand("@9 HOLD 100 YYYY MARKET"));
+    }
+
+    @Test
+    public void testMalformedOrder() {
+        assertEquals("ERROR Invalid command.",
+                     tradeproc.processCommand("BUY 100"));
+    }
+
+    @Test
+    public void testBatchWithOneBadOrder() {
+        String resp = tradeproc.processCommand(
+                "@12 BATCH 3;BUY 100 YYYY MARKET;BUY abc;SELL 5 ZZZZ MARKET");
+        assertTrue(resp, resp.startsWith("@12 RESULTS 3;"));
+        String[] results = resp.split(";");
+        assertEquals(4, results.length);
+        assertTrue(results[1], results[1].startsWith("EXECUTED #"));
+        assertEquals("ERROR Invalid command.", results[2]);
+        assertTrue(results[3], results[3].startsWith("EXECUTED #"));
+    }
+}
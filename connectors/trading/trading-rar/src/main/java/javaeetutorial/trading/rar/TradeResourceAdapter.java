@@ -7,7 +7,9 @@
  */
 package javaeetutorial.trading.rar;
 
+import java.io.IOException;
 import java.util.logging.Logger;
+import javaeetutorial.trading.rar.outbound.ResponseReader;
 import javax.resource.ResourceException;
 import javax.resource.spi.ActivationSpec;
 import javax.resource.spi.BootstrapContext;
@@ -15,6 +17,7 @@ import javax.resource.spi.Connector;
 import javax.resource.spi.ResourceAdapter;
 import javax.resource.spi.ResourceAdapterInternalException;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.resource.spi.work.WorkException;
 import javax.transaction.xa.XAResource;
 
 @Connector(
@@ -25,15 +28,29 @@ import javax.transaction.xa.XAResource;
 public class TradeResourceAdapter implements ResourceAdapter {
    
     private static final Logger log = Logger.getLogger("TradeResourceAdapter");
+    /* Reads the responses of the EIS for all connections */
+    private ResponseReader reader;
 
     @Override
     public void start(BootstrapContext ctx) throws ResourceAdapterInternalException {
         log.info("[TradeResourceAdapter] start()");
+        try {
+            reader = new ResponseReader();
+            ctx.getWorkManager().scheduleWork(reader);
+        } catch (IOException | WorkException e) {
+            throw new ResourceAdapterInternalException(e);
+        }
     }
 
     @Override
     public void stop() {
         log.info("[TradeResourceAdapter] stop()");
+        reader.release();
+    }
+    
+    /* Used by the managed connections */
+    public ResponseReader getResponseReader() {
+        return reader;
     }
 
     /* These are called for inbound connectors */
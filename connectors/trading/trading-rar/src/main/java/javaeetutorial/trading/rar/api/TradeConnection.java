@@ -7,6 +7,8 @@
  */
 package javaeetutorial.trading.rar.api;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.resource.ResourceException;
 
 public interface TradeConnection {
@@ -14,6 +16,13 @@ public interface TradeConnection {
     /* Submits a trade order to the EIS */
     public TradeResponse submitOrder(TradeOrder order) 
                                      throws TradeProcessingException;
+    /* Submits a trade order to the EIS without waiting for the response.
+     * Several orders can be in flight on the same connection. */
+    public CompletableFuture<TradeResponse> submitOrderAsync(TradeOrder order);
+    /* Submits a batch of trade orders to the EIS in one request.
+     * The responses are in the same order as the orders. */
+    public List<TradeResponse> submitOrders(List<TradeOrder> orders)
+                                            throws TradeProcessingException;
     /* Closes the connection handle */
     public void close() throws ResourceException;
     
@@ -7,6 +7,9 @@
  */
 package javaeetutorial.trading.rar.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /* Represents the response to a trade from the EIS */
 public class TradeResponse {
 
@@ -20,20 +23,98 @@ public class TradeResponse {
     public TradeResponse() { }
     
     public TradeResponse(String resp) {
-        String[] words = resp.split(" ");
-        if (words[0].compareTo("EXECUTED") == 0)
+        this(resp, 0, resp.length());
+    }
+    
+    /* Parses a response such as "EXECUTED #12 TOTAL 100.00 FEE 0.50"
+     * that starts at position start of a longer text and ends before
+     * position end. Other responses, such as errors, are FAILED. */
+    public TradeResponse(CharSequence text, int start, int end) {
+        int pos = start;
+        int wordEnd = wordEnd(text, pos, end);
+        if (regionEquals(text, pos, wordEnd, "EXECUTED")) {
             status = Status.EXECUTED;
-        else
+            /* #orderNumber */
+            pos = wordEnd + 2;
+            wordEnd = wordEnd(text, pos, end);
+            orderNumber = (int) parseNumber(text, pos, wordEnd);
+            /* TOTAL total */
+            pos = wordEnd(text, wordEnd + 1, end) + 1;
+            wordEnd = wordEnd(text, pos, end);
+            total = parseNumber(text, pos, wordEnd);
+            /* FEE fee */
+            pos = wordEnd(text, wordEnd + 1, end) + 1;
+            wordEnd = wordEnd(text, pos, end);
+            fee = parseNumber(text, pos, wordEnd);
+        } else
             status = Status.FAILED;
-        orderNumber = Integer.parseInt(words[1].substring(1));
-        total = Double.parseDouble(words[3]);
-        fee = Double.parseDouble(words[5]);
+    }
+    
+    /* Parses the responses to a batch of orders, such as
+     * "RESULTS 2;EXECUTED #12 TOTAL ...;ERROR ..." */
+    public static List<TradeResponse> parseBatch(String resp) {
+        int end = resp.length();
+        int pos = resp.indexOf(' ') + 1;
+        int sep = resp.indexOf(';', pos);
+        if (pos == 0 || !resp.startsWith("RESULTS "))
+            throw new IllegalArgumentException(resp);
+        if (sep < 0)
+            sep = end;
+        List<TradeResponse> responses =
+                new ArrayList<>((int) parseNumber(resp, pos, sep));
+        while (sep < end) {
+            pos = sep + 1;
+            sep = resp.indexOf(';', pos);
+            if (sep < 0)
+                sep = end;
+            responses.add(new TradeResponse(resp, pos, sep));
+        }
+        return responses;
+    }
+    
+    /* Position of the first space at or after pos, or end */
+    private static int wordEnd(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) != ' ')
+            pos++;
+        return pos;
+    }
+    
+    private static boolean regionEquals(CharSequence text, int start, int end,
+                                        String word) {
+        if (end - start != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+    
+    /* Parses a number without sign and exponent, such as 1234 or 12.34 */
+    private static double parseNumber(CharSequence text, int start, int end) {
+        long digits = 0;
+        long scale = 1;
+        boolean fraction = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                if (fraction)
+                    scale *= 10;
+            } else
+                throw new NumberFormatException(text.subSequence(start, end).toString());
+        }
+        if (start == end)
+            throw new NumberFormatException("Missing number");
+        return (double) digits / scale;
     }
     
     @Override
     public String toString() {
-        return String.format("EXECUTED #%d TOTAL %.2f FEE %.2f",
-                             orderNumber, total, fee);
+        return String.format("%s #%d TOTAL %.2f FEE %.2f",
+                             status, orderNumber, total, fee);
     }
     
     /* Getters and setters */
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.trading.rar.outbound;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+
+/* Reads the responses of the EIS for all managed connections.
+ * The resource adapter runs this work on a thread of the container's
+ * work manager. A single selector waits until any of the connections
+ * has data, and each response completes the order it answers. */
+public class ResponseReader implements Work {
+
+    private static final Logger log = Logger.getLogger("ResponseReader");
+    private final Selector selector;
+    /* Connections waiting to be registered with the selector */
+    private final Queue<TradeManagedConnection> registrations;
+    private volatile boolean running;
+
+    public ResponseReader() throws IOException {
+        selector = Selector.open();
+        registrations = new ConcurrentLinkedQueue<>();
+        running = true;
+    }
+
+    /* Start reading the responses of a connection */
+    void register(TradeManagedConnection mconnection) {
+        registrations.add(mconnection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        log.info("[ResponseReader] run()");
+        while (running) {
+            try {
+                selector.select();
+                registerPending();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    read(key);
+                }
+            } catch (IOException e) {
+                log.info("[ResponseReader] " + e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) { }
+    }
+
+    /* Called by the container to stop the work */
+    @Override
+    public void release() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void registerPending() {
+        TradeManagedConnection mconnection;
+        while ((mconnection = registrations.poll()) != null) {
+            try {
+                mconnection.getChannel().register(selector,
+                        SelectionKey.OP_READ, mconnection);
+            } catch (ClosedChannelException e) {
+                mconnection.connectionLost(e);
+            }
+        }
+    }
+
+    private void read(SelectionKey key) {
+        TradeManagedConnection mconnection =
+                (TradeManagedConnection) key.attachment();
+        try {
+            if (!mconnection.readResponses()) {
+                key.cancel();
+                mconnection.connectionLost(
+                        new EOFException("Connection closed by the EIS"));
+            }
+        } catch (IOException e) {
+            key.cancel();
+            mconnection.connectionLost(e);
+        } catch (RuntimeException e) {
+            /* Discard only this connection, the others keep reading */
+            key.cancel();
+            mconnection.connectionLost(
+                    new IOException("Cannot read the responses", e));
+        }
+    }
+}
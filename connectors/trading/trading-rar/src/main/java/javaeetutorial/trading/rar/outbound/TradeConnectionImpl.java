@@ -7,7 +7,13 @@
  */
 package javaeetutorial.trading.rar.outbound;
 
-import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import javaeetutorial.trading.rar.api.TradeConnection;
 import javaeetutorial.trading.rar.api.TradeOrder;
@@ -21,6 +27,8 @@ import javax.resource.ResourceException;
 public class TradeConnectionImpl implements TradeConnection {
     
     private static final Logger log = Logger.getLogger("TradeConnectionImpl");
+    /* Time to wait for the response of the EIS to an order */
+    private static final long TIMEOUT_SECONDS = 30;
     private TradeManagedConnection mconnection;
     private boolean valid;
     
@@ -48,15 +56,74 @@ public class TradeConnectionImpl implements TradeConnection {
     public TradeResponse submitOrder(TradeOrder order) 
                                      throws TradeProcessingException {
         log.info("[TradeConnectionImpl] submitOrder()");
-        if (valid) {
-            try {
-                String resp = mconnection.sendCommandToEIS(order.toString());
-                return new TradeResponse(resp);
-            } catch (IOException e) {
-                throw new TradeProcessingException(e.getMessage());
+        if (!valid)
+            throw new TradeProcessingException("Connection handle is invalid");
+        String resp = await(mconnection, order.toString());
+        TradeResponse response = new TradeResponse(resp);
+        if (response.getStatus() != TradeResponse.Status.EXECUTED)
+            throw new TradeProcessingException(resp);
+        return response;
+    }
+    
+    /* Submits a trade order to the EIS without waiting for the response */
+    @Override
+    public CompletableFuture<TradeResponse> submitOrderAsync(TradeOrder order) {
+        if (!valid) {
+            CompletableFuture<TradeResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(
+                    new TradeProcessingException("Connection handle is invalid"));
+            return failed;
+        }
+        return mconnection.sendCommandAsync(order.toString()).thenApply(
+                new Function<String, TradeResponse>() {
+            @Override
+            public TradeResponse apply(String resp) {
+                TradeResponse response = new TradeResponse(resp);
+                if (response.getStatus() != TradeResponse.Status.EXECUTED)
+                    throw new CompletionException(
+                            new TradeProcessingException(resp));
+                return response;
             }
-        } else
+        });
+    }
+    
+    /* Submits a batch of trade orders to the EIS in one request */
+    @Override
+    public List<TradeResponse> submitOrders(List<TradeOrder> orders)
+                                            throws TradeProcessingException {
+        log.info("[TradeConnectionImpl] submitOrders()");
+        if (!valid)
             throw new TradeProcessingException("Connection handle is invalid");
+        StringBuilder command = new StringBuilder(32 * (orders.size() + 1));
+        command.append("BATCH ").append(orders.size());
+        for (TradeOrder order : orders)
+            command.append(';').append(order.toString());
+        String resp = await(mconnection, command.toString());
+        try {
+            return TradeResponse.parseBatch(resp);
+        } catch (IllegalArgumentException e) {
+            throw new TradeProcessingException(e.getMessage());
+        }
+    }
+    
+    /* Sends a command and waits for its response. If the EIS does not
+     * answer in time, the command is cancelled so that the managed
+     * connection does not keep it. */
+    private static String await(TradeManagedConnection mconnection,
+                                String command) throws TradeProcessingException {
+        CompletableFuture<String> future = mconnection.sendCommandAsync(command);
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new TradeProcessingException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            mconnection.cancel(future);
+            throw new TradeProcessingException("No response from the EIS");
+        } catch (InterruptedException e) {
+            mconnection.cancel(future);
+            Thread.currentThread().interrupt();
+            throw new TradeProcessingException("Interrupted waiting for the EIS");
+        }
     }
     
     /* Closes the connection handle */
@@ -64,7 +131,7 @@ public class TradeConnectionImpl implements TradeConnection {
     public void close() throws ResourceException {
         log.info("[TradeConnectionImpl] close()");
         valid = false;
-        mconnection.disassociateConnection();
+        mconnection.handleClosed(this);
     }
     
 }
@@ -7,15 +7,29 @@
  */
 package javaeetutorial.trading.rar.outbound;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionEvent;
 import javax.resource.spi.ConnectionEventListener;
 import javax.resource.spi.ConnectionRequestInfo;
 import javax.resource.spi.LocalTransaction;
@@ -25,40 +39,239 @@ import javax.security.auth.Subject;
 import javax.transaction.xa.XAResource;
 
 /* Represents a physical connection to the EIS.
- * The container maintains a pool of instances of this class */
+ * The container maintains a pool of instances of this class.
+ * Commands are pipelined: each command is sent with a request ID,
+ * several commands can wait for their responses at the same time,
+ * and the ResponseReader of the resource adapter matches each
+ * response with its command by the ID that the EIS sends back.
+ * The container is notified when a handle is closed and when the
+ * connection fails, so that it can return the connection to the pool
+ * or discard it. */
 public class TradeManagedConnection implements ManagedConnection {
 
     private static final Logger log = Logger.getLogger("TradeManagedConnection");
        
     private TradeConnectionImpl connection;
     private List<TradeConnectionImpl> createdConnections;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private SocketChannel channel;
     private PrintWriter logwriter;
     
+    /* Commands waiting for a response, by request ID */
+    private final Map<Long, CompletableFuture<String>> pending;
+    private final AtomicLong nextId;
+    private volatile IOException failure;
+    /* Used by the ResponseReader thread only */
+    private final ByteBuffer readBuffer;
+    private final StringBuilder line;
+    /* Waits until the socket accepts more data, see write() */
+    private Selector writeSelector;
+    
+    /* Connection event listeners registered by the container */
+    private final List<ConnectionEventListener> listeners;
+    /* For validation, see TradeManagedConnectionFactory */
+    private final long createdMillis;
+    private volatile long lastUsedMillis;
+    private volatile long lastCheckedMillis;
+    
     /* Called by the container from 
      * TradeManagedConnectionFactory.createManagedConnection
      * Creates a physical connection to the EIS */
-    TradeManagedConnection(String host, String port) throws IOException {
+    TradeManagedConnection(String host, String port, ResponseReader reader)
+                           throws IOException {
         
         log.info("[TradeManagedConnection] Constructor");
         createdConnections = new ArrayList<>();
+        pending = new ConcurrentHashMap<>();
+        nextId = new AtomicLong();
+        readBuffer = ByteBuffer.allocate(8192);
+        line = new StringBuilder(80);
+        listeners = new CopyOnWriteArrayList<>();
+        createdMillis = System.currentTimeMillis();
+        lastUsedMillis = createdMillis;
+        lastCheckedMillis = createdMillis;
         
         /* EIS-specific procedure to obtain a new connection */
         int portnum = Integer.parseInt(port);
         log.info(String.format("Connecting to %s on port %s...", host, port));
-        socket = new Socket(host, portnum);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        channel = SocketChannel.open(new InetSocketAddress(host, portnum));
         /* Skip greeting */
-        in.readLine(); in.readLine();
+        readLine(); readLine();
+        /* From now on, the response reader reads from the connection */
+        channel.configureBlocking(false);
+        reader.register(this);
         log.info("Connected!");
     }
     
-    String sendCommandToEIS(String command) throws IOException {
-        out.println(command);
-        return in.readLine();
+    SocketChannel getChannel() {
+        return channel;
+    }
+    
+    /* Sends a command and returns its response when it arrives */
+    CompletableFuture<String> sendCommandAsync(String command) {
+        lastUsedMillis = System.currentTimeMillis();
+        return send(command);
+    }
+    
+    /* Forgets a command whose response is no longer awaited */
+    void cancel(CompletableFuture<String> future) {
+        pending.values().remove(future);
+        future.cancel(false);
+    }
+    
+    /* Checks that the EIS still answers on this connection.
+     * A PING is sent only if nothing was received for keepAliveMillis. */
+    boolean checkAlive(long keepAliveMillis, long timeoutMillis) {
+        long now = System.currentTimeMillis();
+        if (failure != null || !channel.isOpen())
+            return false;
+        if (now - Math.max(lastUsedMillis, lastCheckedMillis) < keepAliveMillis)
+            return true;
+        CompletableFuture<String> ping = send("PING");
+        try {
+            String resp = ping.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            lastCheckedMillis = System.currentTimeMillis();
+            return resp.startsWith("PONG");
+        } catch (ExecutionException | TimeoutException e) {
+            cancel(ping);
+            return false;
+        } catch (InterruptedException e) {
+            cancel(ping);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /* Whether the connection is open, younger than maxLifetimeMillis and
+     * used in the last idleTimeoutMillis. Zero means no limit. */
+    boolean isUsable(long maxLifetimeMillis, long idleTimeoutMillis) {
+        long now = System.currentTimeMillis();
+        if (failure != null || !channel.isOpen())
+            return false;
+        if (maxLifetimeMillis > 0 && now - createdMillis > maxLifetimeMillis)
+            return false;
+        return idleTimeoutMillis <= 0 || now - lastUsedMillis <= idleTimeoutMillis;
+    }
+    
+    private CompletableFuture<String> send(String command) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        long id = nextId.incrementAndGet();
+        pending.put(id, future);
+        try {
+            if (failure != null)
+                throw failure;
+            write("@" + id + " " + command + "\n");
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /* Called by the ResponseReader when the connection has data.
+     * Returns false when the EIS has closed the connection. */
+    boolean readResponses() throws IOException {
+        int n;
+        while ((n = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                char c = (char) readBuffer.get();
+                if (c == '\n') {
+                    complete(line.toString());
+                    line.setLength(0);
+                } else if (c != '\r') {
+                    line.append(c);
+                }
+            }
+            readBuffer.clear();
+        }
+        return n >= 0;
+    }
+    
+    /* Called by the ResponseReader when the connection fails */
+    void connectionLost(IOException e) {
+        if (failure != null)
+            return;
+        log.info("[TradeManagedConnection] connection lost: " + e);
+        failure = e;
+        Iterator<CompletableFuture<String>> it = pending.values().iterator();
+        while (it.hasNext()) {
+            it.next().completeExceptionally(e);
+            it.remove();
+        }
+        /* The container discards the connection */
+        fireEvent(ConnectionEvent.CONNECTION_ERROR_OCCURRED, null, e);
+    }
+    
+    private void fireEvent(int type, Object handle, Exception e) {
+        ConnectionEvent event = (e == null) ? new ConnectionEvent(this, type)
+                                            : new ConnectionEvent(this, type, e);
+        event.setConnectionHandle(handle);
+        for (ConnectionEventListener listener : listeners) {
+            switch (type) {
+                case ConnectionEvent.CONNECTION_CLOSED:
+                    listener.connectionClosed(event);
+                    break;
+                case ConnectionEvent.CONNECTION_ERROR_OCCURRED:
+                    listener.connectionErrorOccurred(event);
+                    break;
+            }
+        }
+    }
+    
+    /* Complete the command that a response line answers */
+    private void complete(String response) {
+        int space = response.indexOf(' ');
+        if (!response.startsWith("@") || !isRequestId(response, space)) {
+            log.info("[TradeManagedConnection] unexpected response: " + response);
+            return;
+        }
+        long id = Long.parseLong(response.substring(1, space));
+        CompletableFuture<String> future = pending.remove(id);
+        if (future != null)
+            future.complete(response.substring(space + 1));
+    }
+    
+    /* Whether the response has only digits between "@" and the space,
+     * few enough to fit in a long */
+    private static boolean isRequestId(String response, int space) {
+        if (space < 2 || space > 19)
+            return false;
+        for (int i = 1; i < space; i++)
+            if (!Character.isDigit(response.charAt(i)))
+                return false;
+        return true;
+    }
+    
+    /* Writes a command. Commands from different threads are not mixed,
+     * and the write waits while the socket buffer is full. */
+    private synchronized void write(String command) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(command.getBytes(StandardCharsets.US_ASCII));
+        while (buf.hasRemaining()) {
+            if (channel.write(buf) == 0) {
+                if (writeSelector == null) {
+                    writeSelector = Selector.open();
+                    channel.register(writeSelector, SelectionKey.OP_WRITE);
+                }
+                writeSelector.select(1000);
+                writeSelector.selectedKeys().clear();
+            }
+        }
+    }
+    
+    /* Reads a line while the channel is still in blocking mode */
+    private String readLine() throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            one.clear();
+            if (channel.read(one) < 0)
+                throw new EOFException("Connection closed by the EIS");
+            char c = (char) one.get(0);
+            if (c == '\n')
+                return sb.toString();
+            else if (c != '\r')
+                sb.append(c);
+        }
     }
     
     /* Called by the container to return a new connection handle. */
@@ -68,6 +281,7 @@ public class TradeManagedConnection implements ManagedConnection {
         /* This example does not use security (Subject) */
         log.info("[TradeManagedConnection] getConnection()");
         connection = new TradeConnectionImpl(this);
+        createdConnections.add(connection);
         return connection;
     }
 
@@ -76,8 +290,17 @@ public class TradeManagedConnection implements ManagedConnection {
     public void destroy() throws ResourceException {
         try {
             log.info("[TradeManagedConnection] destroy()");
-            socket.close();
+            channel.close();
+            if (writeSelector != null)
+                writeSelector.close();
         } catch (IOException e) {}
+        /* Fail pending orders without notifying the container */
+        failure = new EOFException("Connection destroyed");
+        Iterator<CompletableFuture<String>> it = pending.values().iterator();
+        while (it.hasNext()) {
+            it.next().completeExceptionally(failure);
+            it.remove();
+        }
         
     }
 
@@ -88,6 +311,7 @@ public class TradeManagedConnection implements ManagedConnection {
         for (TradeConnectionImpl con : createdConnections)
             if (con != null)
                 con.invalidate();
+        createdConnections.clear();
     }
 
     /* Called by the container to associate a different connection handle */
@@ -101,12 +325,25 @@ public class TradeManagedConnection implements ManagedConnection {
     public void disassociateConnection() {
         this.connection = null;
     }
+    
+    /* Called by a connection handle when the application closes it.
+     * The container returns this connection to the pool. */
+    void handleClosed(TradeConnectionImpl handle) {
+        createdConnections.remove(handle);
+        if (connection == handle)
+            disassociateConnection();
+        fireEvent(ConnectionEvent.CONNECTION_CLOSED, handle, null);
+    }
 
     @Override
-    public void addConnectionEventListener(ConnectionEventListener listener) {}
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        listeners.add(listener);
+    }
 
     @Override
-    public void removeConnectionEventListener(ConnectionEventListener listener) {}
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        listeners.remove(listener);
+    }
 
     @Override
     public XAResource getXAResource() throws ResourceException {
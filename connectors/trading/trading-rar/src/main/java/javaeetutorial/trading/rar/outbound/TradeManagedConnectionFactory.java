@@ -10,8 +10,10 @@ package javaeetutorial.trading.rar.outbound;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Logger;
+import javaeetutorial.trading.rar.TradeResourceAdapter;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -27,11 +29,14 @@ import javax.resource.spi.ManagedConnection;
 import javax.resource.spi.ManagedConnectionFactory;
 import javax.resource.spi.ResourceAdapter;
 import javax.resource.spi.ResourceAdapterAssociation;
+import javax.resource.spi.ValidatingManagedConnectionFactory;
 import javax.security.auth.Subject;
 
 
 /* The container's connection manager uses this class to create a pool
- * of managed connections, which are associated at times with physical ones */
+ * of managed connections, which are associated at times with physical ones.
+ * Connections that are broken, idle for too long or too old are reported
+ * to the container as invalid, and are never matched to a request. */
 
 /* Define classes an interfaces for the EIS physical connection */
 @ConnectionDefinition(
@@ -42,16 +47,22 @@ import javax.security.auth.Subject;
 )
 public class TradeManagedConnectionFactory implements ManagedConnectionFactory,
                                                       ResourceAdapterAssociation,
+                                                      ValidatingManagedConnectionFactory,
                                                       Serializable,
                                                       Referenceable {
     
     private static final Logger log = Logger.getLogger("TradeManagedConnectionFactory");
     private static final long serialVersionUID = 7918855339952421358L;
+    /* Milliseconds to wait for the PONG of a keep-alive check */
+    private static final long PING_TIMEOUT = 2000;
     private ResourceAdapter ra;
     private Reference reference;
     private PrintWriter logWriter;
     private String host;
     private String port;
+    private Integer idleTimeout;
+    private Integer maxLifetime;
+    private Integer keepAliveInterval;
     
     public TradeManagedConnectionFactory() { }
     
@@ -62,6 +73,18 @@ public class TradeManagedConnectionFactory implements ManagedConnectionFactory,
     @ConfigProperty(type = String.class, defaultValue = "4004")
     public void setPort(String port) { this.port = port; }
     public String getPort() { return port; }
+    /* Seconds, 0 for no limit */
+    @ConfigProperty(type = Integer.class, defaultValue = "300")
+    public void setIdleTimeout(Integer idleTimeout) { this.idleTimeout = idleTimeout; }
+    public Integer getIdleTimeout() { return idleTimeout; }
+    @ConfigProperty(type = Integer.class, defaultValue = "1800")
+    public void setMaxLifetime(Integer maxLifetime) { this.maxLifetime = maxLifetime; }
+    public Integer getMaxLifetime() { return maxLifetime; }
+    @ConfigProperty(type = Integer.class, defaultValue = "30")
+    public void setKeepAliveInterval(Integer keepAliveInterval) { 
+        this.keepAliveInterval = keepAliveInterval; 
+    }
+    public Integer getKeepAliveInterval() { return keepAliveInterval; }
     
     @Override
     public Object createConnectionFactory() throws ResourceException {
@@ -85,7 +108,8 @@ public class TradeManagedConnectionFactory implements ManagedConnectionFactory,
                                                      throws ResourceException {
         log.info("[TradeManagedConnectionFactory] createManagedConnection()");
         try {
-            return new TradeManagedConnection(getHost(), getPort());
+            ResponseReader reader = ((TradeResourceAdapter) ra).getResponseReader();
+            return new TradeManagedConnection(getHost(), getPort(), reader);
         } catch (IOException e) {
             throw new ResourceException(e.getCause());
         }
@@ -102,16 +126,47 @@ public class TradeManagedConnectionFactory implements ManagedConnectionFactory,
         /* This resource adapter does not use security (Subject) */
         TradeManagedConnection match = null;
         /* This resource adapter has no additional parameters for connections,
-         * so any open connection can be used by an application */
+         * so any usable connection can be used by an application */
         for (Object mco : connectionSet) {
             if (mco != null) { 
-                match = (TradeManagedConnection) mco;
-                log.info("Connection match!");
-                break;
+                TradeManagedConnection mc = (TradeManagedConnection) mco;
+                if (isUsable(mc)) {
+                    match = mc;
+                    log.info("Connection match!");
+                    break;
+                }
+                /* Skipped, getInvalidConnections reports it to the container */
             }
         }
         return match;
     }
+    
+    /* Called by the container to validate the connections in the pool.
+     * Idle connections are checked with a PING to the EIS. */
+    @Override
+    public Set getInvalidConnections(Set connectionSet) throws ResourceException {
+        Set<Object> invalid = new HashSet<>();
+        long keepAlive = seconds(keepAliveInterval, 30);
+        for (Object mco : connectionSet) {
+            if (!(mco instanceof TradeManagedConnection))
+                continue;
+            TradeManagedConnection mc = (TradeManagedConnection) mco;
+            if (!isUsable(mc) || !mc.checkAlive(keepAlive, PING_TIMEOUT))
+                invalid.add(mc);
+        }
+        if (!invalid.isEmpty())
+            log.info("[TradeManagedConnectionFactory] invalid connections: " 
+                     + invalid.size());
+        return invalid;
+    }
+    
+    private boolean isUsable(TradeManagedConnection mc) {
+        return mc.isUsable(seconds(maxLifetime, 1800), seconds(idleTimeout, 300));
+    }
+    
+    private static long seconds(Integer value, int defaultValue) {
+        return 1000L * ((value != null) ? value : defaultValue);
+    }
 
     @Override
     public void setLogWriter(PrintWriter out) throws ResourceException {
@@ -31,7 +31,10 @@ import javax.resource.spi.TransactionSupport;
     resourceAdapter = "#trading-rar",
     minPoolSize = 5,
     transactionSupport = 
-            TransactionSupport.TransactionSupportLevel.NoTransaction
+            TransactionSupport.TransactionSupportLevel.NoTransaction,
+    /* The pool calls getInvalidConnections before handing out a
+     * connection, so connections the EIS dropped are discarded */
+    properties = { "is-connection-validation-required=true" }
 )
 public class ResourceAccessBean implements Serializable {
 
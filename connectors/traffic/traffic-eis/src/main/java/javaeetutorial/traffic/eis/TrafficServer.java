@@ -8,53 +8,263 @@
 package javaeetutorial.traffic.eis;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
-public class TrafficServer {
-    
-    private static List<Socket> clients;
-    
+/* Sends traffic information to all connected clients.
+ * One thread waits on a selector for new connections and for clients
+ * that can take more data. At every tick, the delta is encoded once in
+ * a buffer that all the clients share. Each client writes its pending
+ * buffers with one gathering write and never blocks the others. Closed
+ * clients, and clients that fall too far behind, are disconnected.
+ *
+ * Usage: TrafficServer [port] [cities] [routes] [tickMillis] [maxPending]
+ * where maxPending is the number of messages a client can have waiting
+ * before it is disconnected.
+ */
+public class TrafficServer implements Runnable {
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final SelectionKey serverKey;
+    private final TrafficService tsvc;
+    private final long tickMillis;
+    private final int maxPending;
+    /* Connected clients */
+    private final List<Client> clients;
+    /* Connected clients that have not received the snapshot yet */
+    private final List<Client> newClients;
+    private final ByteBuffer scratch;
+    private long evicted;
+
     public static void main(String[] args) throws IOException {
-        
+
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 4008;
+        int ncities = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int nroutes = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        long tickMillis = (args.length > 3) ? Long.parseLong(args[3]) : 3000;
+        int maxPending = (args.length > 4) ? Integer.parseInt(args[4]) : 32;
+
+        TrafficServer server = new TrafficServer(port,
+                new TrafficService(ncities, nroutes), tickMillis, maxPending);
+        System.out.println(String.format(
+                "Traffic EIS accepting connections on port %d " +
+                "(%d cities, %d routes, every %d ms)",
+                port, ncities, nroutes, tickMillis));
+        server.run();
+    }
+
+    public TrafficServer(int port, TrafficService tsvc, long tickMillis,
+                         int maxPending) throws IOException {
+        this.tsvc = tsvc;
+        this.tickMillis = tickMillis;
+        this.maxPending = maxPending;
         clients = new ArrayList<>();
-        final ServerSocket server = new ServerSocket(4008);
-        System.out.println("Traffic EIS accepting connections on port 4008");
-        
-        /* Accept connections */
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                while (true) {
-                    try {
-                        Socket client = server.accept();
-                        synchronized (TrafficServer.class) {
-                            clients.add(client);
+        newClients = new ArrayList<>();
+        scratch = ByteBuffer.allocate(1024);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        serverKey = server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /* Event loop */
+    @Override
+    public void run() {
+        long nextTick = System.currentTimeMillis() + tickMillis;
+        long nextStatus = System.currentTimeMillis() + 10000;
+        int lastCount = 0;
+        try {
+            while (true) {
+                long wait = nextTick - System.currentTimeMillis();
+                if (wait > 0) {
+                    selector.select(wait);
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                client.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                client.flush();
+                            }
+                        } catch (IOException ex) {
+                            client.close();
                         }
-                        System.out.println("Client connected");
-                    } catch (IOException e) { }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextTick) {
+                    tick();
+                    nextTick = now + tickMillis;
+                }
+                if (now >= nextStatus) {
+                    if (clients.size() != lastCount) {
+                        lastCount = clients.size();
+                        System.out.println(String.format(
+                                "%d clients connected, %d disconnected for lagging",
+                                lastCount, evicted));
+                    }
+                    nextStatus = now + 10000;
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Server stopped: " + ex);
+        }
+    }
+
+    /* A failed accept, for example when the process has no file
+     * descriptors left, does not stop the server. New connections wait
+     * until the next tick, so that the loop does not spin meanwhile. */
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key);
+            key.attach(client);
+            newClients.add(client);
+        } catch (IOException ex) {
+            System.out.println("Cannot accept a connection: " + ex);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) { }
+            }
+            serverKey.interestOps(0);
+        }
+    }
+
+    /* Send the changes to the clients that have the previous state and
+     * a snapshot to the clients that just connected */
+    private void tick() {
+        if (serverKey.interestOps() == 0) {
+            serverKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+        String delta = tsvc.nextDelta();
+        if (delta != null) {
+            send(clients, encode(delta));
+        }
+        if (!newClients.isEmpty()) {
+            send(newClients, encode(tsvc.getReport()));
+            clients.addAll(newClients);
+            newClients.clear();
+        }
+        /* Remove the clients closed during this tick */
+        Iterator<Client> it = clients.iterator();
+        while (it.hasNext()) {
+            if (!it.next().channel.isOpen()) {
+                it.remove();
+            }
+        }
+    }
+
+    private void send(List<Client> to, ByteBuffer message) {
+        for (Client client : to) {
+            if (!client.channel.isOpen()) {
+                continue;
+            }
+            if (client.pending.size() >= maxPending) {
+                evicted++;
+                client.close();
+                continue;
+            }
+            /* Each client reads the shared content at its own position */
+            client.pending.add(message.duplicate());
+            try {
+                client.flush();
+            } catch (IOException ex) {
+                client.close();
+            }
+        }
+    }
+
+    /* A read-only buffer with the line and the end of line. The buffer
+     * is direct, so the channels write it without copying it first. */
+    private static ByteBuffer encode(String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /* A client connection, used only by the selector thread */
+    private class Client {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        /* Messages not completely written yet, in order */
+        private final ArrayDeque<ByteBuffer> pending;
+        private ByteBuffer[] gather;
+
+        Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            pending = new ArrayDeque<>();
+            gather = new ByteBuffer[4];
+        }
+
+        /* Clients do not send anything, but reading detects when
+         * they disconnect */
+        void read() throws IOException {
+            scratch.clear();
+            if (channel.read(scratch) < 0) {
+                close();
+            }
+        }
+
+        /* Write as much of the pending messages as the socket takes */
+        void flush() throws IOException {
+            if (!pending.isEmpty()) {
+                int n = pending.size();
+                if (gather.length < n) {
+                    gather = new ByteBuffer[Math.max(n, gather.length * 2)];
+                }
+                pending.toArray(gather);
+                channel.write(gather, 0, n);
+                while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                    pending.poll();
                 }
+                Arrays.fill(gather, 0, n, null);
             }
-        }).start();
-        
-        /* Send traffic information to all connected peers */
-        PrintWriter out;
-        String report;
-        TrafficService tsvc = new TrafficService();
-        while (true) {
-            report = tsvc.getReport();
-            for (Socket client : clients) {
-                out = new PrintWriter(client.getOutputStream(), true);
-                //System.out.println(report);
-                out.println(report);
-            }
-            
+            int ops = pending.isEmpty() ? SelectionKey.OP_READ
+                                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            if (key.isValid() && key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        void close() {
+            key.cancel();
+            pending.clear();
             try {
-                Thread.sleep(3000);
-            } catch (InterruptedException e) { }
+                channel.close();
+            } catch (IOException ex) { }
         }
     }
 
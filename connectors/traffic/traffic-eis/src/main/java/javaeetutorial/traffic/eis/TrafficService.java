@@ -12,38 +12,86 @@ import java.util.Random;
 import javax.json.Json;
 import javax.json.stream.JsonGenerator;
 
+/* Simulates the traffic status of the access routes of several cities.
+ * Clients first receive a snapshot with the status of every route and
+ * then, at every tick, a delta with only the routes that changed:
+ * {"report":[ {"city":"city_i","access":"access_j","status":"status_k"}, ... ]}
+ * {"delta":[ {"city":"city_i","access":"access_j","status":"status_k"}, ... ]}
+ */
 public class TrafficService {
     
-    private String[] cities = {
-        "City1", "City2", "City3", "City4", "City5"
-    };
-    private String[] accessRoutes = {
-        "AccessA", "AccessB", "AccessC", "AccessD", "AccessE"
-    };
+    /* Probability that the status of a route changes at each tick */
+    private static final double CHANGE_RATE = 0.2;
+    private String[] cities;
+    private String[] accessRoutes;
     private String[] statuses = {
         "GOOD", "SLOW", "CONGESTED"
     };
     private Random random;
+    /* Current status of each route, by city and route */
+    private int[][] current;
     
+    /* Five cities with five access routes each */
     public TrafficService() { 
+        this(5, 5);
+    }
+    
+    /* Cities City1, City2, ... with routes AccessA, AccessB, ... */
+    public TrafficService(int ncities, int nroutes) {
         random = new Random();
+        cities = new String[ncities];
+        for (int i = 0; i < ncities; i++)
+            cities[i] = "City" + (i + 1);
+        accessRoutes = new String[nroutes];
+        for (int j = 0; j < nroutes; j++)
+            accessRoutes[j] = (j < 26) ? "Access" + (char) ('A' + j) 
+                                       : "Access" + (j + 1);
+        current = new int[ncities][nroutes];
+        for (int[] routes : current)
+            for (int j = 0; j < routes.length; j++)
+                routes[j] = random.nextInt(statuses.length);
     }
     
-    /* Return a line with a JSON report like this:
-     * {"report":[ {"city":"city_i","access":"access_j","status":"status_k"}, ... ]} */
+    /* Return a line with the JSON snapshot of all the routes */
     public String getReport() {
+        return toJson("report", null);
+    }
+    
+    /* Change the status of some routes and return a line with the JSON
+     * delta of the routes that changed, or null if none changed */
+    public String nextDelta() {
+        boolean[][] changed = new boolean[cities.length][accessRoutes.length];
+        boolean any = false;
+        for (int i = 0; i < cities.length; i++) {
+            for (int j = 0; j < accessRoutes.length; j++) {
+                if (random.nextDouble() < CHANGE_RATE) {
+                    int status = random.nextInt(statuses.length);
+                    if (status != current[i][j]) {
+                        current[i][j] = status;
+                        changed[i][j] = true;
+                        any = true;
+                    }
+                }
+            }
+        }
+        return any ? toJson("delta", changed) : null;
+    }
+    
+    /* Only the routes in include, or all if include is null */
+    private String toJson(String key, boolean[][] include) {
         
         StringWriter swriter = new StringWriter();
         try (JsonGenerator gen = Json.createGenerator(swriter)) {
             gen.writeStartObject();
-            gen.writeStartArray("report");
-            for (String city : cities) {
-                for (String accessRoute : accessRoutes) {
-                    int i = random.nextInt(statuses.length);
+            gen.writeStartArray(key);
+            for (int i = 0; i < cities.length; i++) {
+                for (int j = 0; j < accessRoutes.length; j++) {
+                    if (include != null && !include[i][j])
+                        continue;
                     gen.writeStartObject();
-                    gen.write("city", city);
-                    gen.write("access", accessRoute);
-                    gen.write("status", statuses[i]);
+                    gen.write("city", cities[i]);
+                    gen.write("access", accessRoutes[j]);
+                    gen.write("status", statuses[current[i][j]]);
                     gen.writeEnd();
                 }
             }
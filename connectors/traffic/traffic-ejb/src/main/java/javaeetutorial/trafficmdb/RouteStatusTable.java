@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.trafficmdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+
+/* The last known status of each access route.
+ * Shared by all the MDB instances. Routes and statuses are numbered as
+ * they appear, and the table keeps one byte per route, so it stays
+ * small as the number of routes grows. */
+@ApplicationScoped
+public class RouteStatusTable {
+
+    /* Route number by name */
+    private final Map<String,Integer> routes = new HashMap<>();
+    /* Status names by number */
+    private final List<String> statuses = new ArrayList<>();
+    /* Status number + 1 by route number, 0 if unknown */
+    private byte[] table = new byte[16];
+
+    /* Record the status of a route, returns true if it changed */
+    public synchronized boolean update(String access, String status) {
+        Integer route = routes.get(access);
+        if (route == null) {
+            route = routes.size();
+            routes.put(access, route);
+            if (route == table.length)
+                table = Arrays.copyOf(table, table.length * 2);
+        }
+        int code = statuses.indexOf(status);
+        if (code < 0) {
+            if (statuses.size() == Byte.MAX_VALUE)
+                throw new IllegalStateException("Too many status values");
+            statuses.add(status);
+            code = statuses.size() - 1;
+        }
+        if (table[route] == code + 1)
+            return false;
+        table[route] = (byte) (code + 1);
+        return true;
+    }
+}
@@ -7,7 +7,6 @@
  */
 package javaeetutorial.trafficmdb;
 
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,8 +22,10 @@ import javax.jms.JMSContext;
 import javax.jms.JMSDestinationDefinition;
 import javax.jms.Topic;
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
 import javax.json.stream.JsonGenerator;
-import javax.json.stream.JsonParser;
 
 /* Create a JMS destination to send filtered traffic messages */
 @JMSDestinationDefinition(
@@ -41,7 +42,8 @@ import javax.json.stream.JsonParser;
         )
     }
 )
-/* Receive messages from the EIS and filter them for "City1" only */
+/* Receive messages from the EIS and filter them for "City1" only.
+ * Only the routes whose status changed are sent to the JMS topic. */
 public class TrafficMdb implements TrafficListener {
     
     private static final String filterCity = "City1";
@@ -52,55 +54,55 @@ public class TrafficMdb implements TrafficListener {
     private Topic topic;
     @Inject
     private JMSContext jmsContext;
+    /* Last known status of the routes of filterCity */
+    @Inject
+    private RouteStatusTable routeStatus;
     
     public TrafficMdb() {
         log.info("[TrafficMdb] Constructor()");
     }
     
     /* The RA looks for methods annotated with @TrafficCommand */
-    /* Processes "report" JSON messages from the traffic service */
+    /* Processes "report" JSON messages from the traffic service,
+     * a snapshot of the status of all routes.
+     * The RA passes the message already parsed. */
     @TrafficCommand(name="report", info="Process report")
-    public void processReport(String jsonReport) {
-        
-        String city, access, status;
-        Map<String,String> accessStatusMap = new HashMap<>();
-        
+    public void processReport(JsonObject report) {
         log.info("[TrafficMdb] processReport()");
-        //log.info(jsonReport);
+        processEntries(report, "report");
+    }
+    
+    /* Processes "delta" JSON messages, the routes that changed */
+    @TrafficCommand(name="delta", info="Process changes")
+    public void processDelta(JsonObject delta) {
+        log.info("[TrafficMdb] processDelta()");
+        processEntries(delta, "delta");
+    }
+    
+    /* Publish only the routes whose status changed */
+    private void processEntries(JsonObject message, String key) {
         
-        /* Parse the JSON traffic report message */
-        JsonParser parser = Json.createParser(new StringReader(jsonReport));
+        Map<String,String> accessStatusMap = new HashMap<>();
         
-        /* Ensure the message starts with {"report": [ ... */
-        if (parser.hasNext() && parser.next() == JsonParser.Event.START_OBJECT &&
-            parser.hasNext() && parser.next() == JsonParser.Event.KEY_NAME &&
-            parser.getString().equals("report") &&
-            parser.hasNext() && parser.next() == JsonParser.Event.START_ARRAY &&
-            parser.hasNext()) {
+        /* Ensure the message is {"report": [ ... ]} or {"delta": [ ... ]} */
+        JsonValue entries = message.get(key);
+        if (entries != null && entries.getValueType() == JsonValue.ValueType.ARRAY) {
             
-            /* Parse array entries: 
+            /* Array entries: 
              * {"city":"...", "access":"...", "status":"..."} */
-            while (parser.hasNext()) {
-                JsonParser.Event event = parser.next();
-                if (event == JsonParser.Event.END_ARRAY)
-                    break;
-                else if (event == JsonParser.Event.START_OBJECT) {
-                    /* For simplicty, assume each entry has the right format */
-                    parser.next();
-                    parser.next();
-                    city = parser.getString();
-                    parser.next();
-                    parser.next();
-                    access = parser.getString();
-                    parser.next();
-                    parser.next();
-                    status = parser.getString();
-                    /* Filter traffic messages for only one city */
-                    if (city.compareTo(filterCity) == 0)
-                        accessStatusMap.put(access, status);
-                }
+            for (JsonObject entry : ((JsonArray) entries).getValuesAs(JsonObject.class)) {
+                /* For simplicty, assume each entry has the right format */
+                String city = entry.getString("city");
+                /* Filter traffic messages for only one city */
+                if (city.compareTo(filterCity) != 0)
+                    continue;
+                String access = entry.getString("access");
+                String status = entry.getString("status");
+                if (routeStatus.update(access, status))
+                    accessStatusMap.put(access, status);
             }
-            sendJMSUpdate(accessStatusMap);            
+            if (!accessStatusMap.isEmpty())
+                sendJMSUpdate(accessStatusMap);
         } else
             log.info("[TrafficMdb] Wrong message format");
         
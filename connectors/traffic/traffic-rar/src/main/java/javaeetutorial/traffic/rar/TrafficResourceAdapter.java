@@ -8,8 +8,10 @@
 package javaeetutorial.traffic.rar;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.logging.Logger;
 import javaeetutorial.traffic.rar.inbound.ObtainEndpointWork;
+import javaeetutorial.traffic.rar.inbound.TrafficDispatcher;
 import javaeetutorial.traffic.rar.inbound.TrafficActivationSpec;
 import javaeetutorial.traffic.rar.inbound.TrafficServiceSubscriber;
 import javax.resource.ResourceException;
@@ -37,6 +39,7 @@ public class TrafficResourceAdapter implements ResourceAdapter, Serializable {
     private TrafficActivationSpec tSpec;
     private WorkManager workManager;
     private Work tSubscriber;
+    private TrafficDispatcher dispatcher;
     
     /* Make the activation configuration available elswhere */
     public TrafficActivationSpec getActivationSpec() {
@@ -72,17 +75,22 @@ public class TrafficResourceAdapter implements ResourceAdapter, Serializable {
         
         /* MessageEndpoint msgEndpoint = endpointFactory.createEndpoint(null);
          * but we need to do that in a different thread, otherwise the MDB
-         * never deploys. */
-        ObtainEndpointWork work = new ObtainEndpointWork(this, endpointFactory);
+         * never deploys. Several endpoints process messages in parallel. */
+        ObtainEndpointWork work = new ObtainEndpointWork(this, endpointFactory,
+                                                         tSpec.getEndpoints());
         workManager.scheduleWork(work);      
     }
     
-    /* Called from ObtainEndpoint work after obtaining the endpoint */
-    public void endpointAvailable(MessageEndpoint endpoint) {
+    /* Called from ObtainEndpoint work after obtaining the endpoints */
+    public void endpointsAvailable(List<MessageEndpoint> endpoints) {
         
         try {
+            /* Deliver messages to the endpoints using container-managed threads */
+            dispatcher = new TrafficDispatcher(workManager, endpoints, 
+                                               tSpec.getCommands().values(),
+                                               tSpec.getQueueSize());
             /* Start the traffic subscriber client in a new thread */
-            tSubscriber = new TrafficServiceSubscriber(tSpec, endpoint);
+            tSubscriber = new TrafficServiceSubscriber(tSpec, dispatcher);
             workManager.scheduleWork(tSubscriber);
         } catch (WorkException e) {
             log.info("[TrafficResourceAdapter] Can't start the subscriber");
@@ -95,7 +103,11 @@ public class TrafficResourceAdapter implements ResourceAdapter, Serializable {
                                      ActivationSpec spec) {
         log.info("[TrafficResourceAdapter] endpointDeactivation()");
         /* Stop listening */
-        tSubscriber.release();
+        if (tSubscriber != null)
+            tSubscriber.release();
+        /* Stop delivering messages to the MDB */
+        if (dispatcher != null)
+            dispatcher.release();
     }
 
     /* This connector does not use transactions */
@@ -7,6 +7,8 @@
  */
 package javaeetutorial.traffic.rar.inbound;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 import javaeetutorial.traffic.rar.TrafficResourceAdapter;
 import javax.resource.spi.UnavailableException;
@@ -21,16 +23,20 @@ public class ObtainEndpointWork implements Work {
     private static final Logger log = Logger.getLogger("ObtainEndpointWork");
     private TrafficResourceAdapter ra;
     private MessageEndpointFactory mef;
-    private MessageEndpoint endpoint;
+    private int count;
+    private List<MessageEndpoint> endpoints;
     
     public ObtainEndpointWork(TrafficResourceAdapter ra, 
-                              MessageEndpointFactory mef) {
+                              MessageEndpointFactory mef,
+                              int count) {
         this.mef = mef;
         this.ra = ra;
+        this.count = count;
+        endpoints = new ArrayList<>(count);
     }
     
-    public MessageEndpoint getMessageEndpoint() {
-        return endpoint;
+    public List<MessageEndpoint> getMessageEndpoints() {
+        return endpoints;
     }
 
     @Override
@@ -38,12 +44,15 @@ public class ObtainEndpointWork implements Work {
         log.info("[ObtainEndpointWork] run()");
         try {
             /* Use the endpoint factory passed by the container upon
-             * activation to obtain the MDB endpoint */
-            endpoint = mef.createEndpoint(null);
+             * activation to obtain the MDB endpoints */
+            for (int i = 0; i < count; i++)
+                endpoints.add(mef.createEndpoint(null));
             /* Return back to the resource adapter class */
-            ra.endpointAvailable(endpoint);
+            ra.endpointsAvailable(endpoints);
         } catch (UnavailableException ex ) {
             log.info(ex.getMessage());
+            for (MessageEndpoint endpoint : endpoints)
+                endpoint.release();
         }
     }
     
@@ -30,8 +30,14 @@ public class TrafficActivationSpec implements ActivationSpec, Serializable {
     private ResourceAdapter ra;
     @ConfigProperty()
     private String port;
+    /* Number of MDB endpoints that process messages in parallel */
+    @ConfigProperty(type = Integer.class, defaultValue = "4")
+    private Integer endpoints = 4;
+    /* Messages that wait for each endpoint before the subscriber stops reading */
+    @ConfigProperty(type = Integer.class, defaultValue = "64")
+    private Integer queueSize = 64;
     private Class beanClass;
-    private Map<String,Method> commands;
+    private Map<String,TrafficCommandMethod> commands;
     private static final long serialVersionUID = 1674967719558213103L;
     private static final Logger log = Logger.getLogger("TrafficActivationSpec");
     
@@ -42,37 +48,55 @@ public class TrafficActivationSpec implements ActivationSpec, Serializable {
     /* Port is set by the MDB using @ActivationConfigProperty */
     public String getPort() { return port; }
     public void setPort(String port) { this.port = port; }
+    public Integer getEndpoints() { return endpoints; }
+    public void setEndpoints(Integer endpoints) { this.endpoints = endpoints; }
+    public Integer getQueueSize() { return queueSize; }
+    public void setQueueSize(Integer queueSize) { this.queueSize = queueSize; }
     
     /* Set from the RA class and accessed by the traffic subscriber thread */
     public void setBeanClass(Class c) { beanClass = c; }
     public Class getBeanClass() { return beanClass; }
     
     /* Inspect the MDB class for methods with a custom annotation.
-     * This allows the MDB business interface to be emtpy */    
+     * This allows the MDB business interface to be emtpy.
+     * The methods are resolved to method handles here, once, instead
+     * of being looked up for every message. */    
     public void findCommandsInMDB() {
         log.info("[TrafficActivationSpec] findCommandsInMDB()");
         for (Method method : beanClass.getMethods()) {
             if (method.isAnnotationPresent(TrafficCommand.class)) {
                 TrafficCommand tCommand = method.getAnnotation(TrafficCommand.class);
-                commands.put(tCommand.name(), method);
+                if (!TrafficCommandMethod.isCommand(method)) {
+                    log.info("Command args must be one String or JsonObject.");
+                    continue;
+                }
+                if (commands.containsKey(tCommand.name())) {
+                    log.info("Duplicate command " + tCommand.name());
+                    continue;
+                }
+                try {
+                    commands.put(tCommand.name(), new TrafficCommandMethod(
+                            tCommand.name(), commands.size(), method));
+                } catch (IllegalAccessException ex) {
+                    log.info("Command method not accessible: " + method.getName());
+                }
             }
         }
         
         if (commands.isEmpty())
             log.info("No command annotations in MDB.");
-        
-        for (Method m : commands.values()) {
-            for (Class c : m.getParameterTypes())
-                if (c != String.class)
-                    log.info("Command args must be String.");
-        }
     }
     
     /* Used by the subscriber thread to invoke the discovered commands on the MDB */
-    public Map<String,Method> getCommands() { return commands; }
+    public Map<String,TrafficCommandMethod> getCommands() { return commands; }
     
     @Override
-    public void validate() throws InvalidPropertyException { }
+    public void validate() throws InvalidPropertyException {
+        if (endpoints == null || endpoints < 1)
+            throw new InvalidPropertyException("endpoints must be at least 1");
+        if (queueSize == null || queueSize < 1)
+            throw new InvalidPropertyException("queueSize must be at least 1");
+    }
 
     @Override
     public ResourceAdapter getResourceAdapter() {
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.traffic.rar.inbound;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import javax.json.JsonObject;
+
+/* A method of the MDB annotated with @TrafficCommand.
+ * The method is looked up once, when the MDB is activated, as a method
+ * handle that the dispatcher binds to each endpoint. The method takes
+ * either the message already parsed (JsonObject) or its text (String),
+ * so the MDB does not need to parse the message again. */
+public class TrafficCommandMethod {
+
+    /* The type of all handles: (endpoint, argument) -> result */
+    private static final MethodType GENERIC =
+            MethodType.methodType(Object.class, Object.class, Object.class);
+    private final String name;
+    private final int index;
+    private final Method method;
+    private final MethodHandle handle;
+    private final boolean parsed;
+
+    TrafficCommandMethod(String name, int index, Method method)
+                         throws IllegalAccessException {
+        this.name = name;
+        this.index = index;
+        this.method = method;
+        parsed = (method.getParameterTypes()[0] == JsonObject.class);
+        handle = MethodHandles.publicLookup().unreflect(method).asType(GENERIC);
+    }
+
+    /* Whether the method can be invoked with a JSON message */
+    static boolean isCommand(Method method) {
+        Class[] params = method.getParameterTypes();
+        return params.length == 1 &&
+               (params[0] == String.class || params[0] == JsonObject.class);
+    }
+
+    public String getName() { return name; }
+
+    /* Position of this command in the table of the activation spec */
+    public int getIndex() { return index; }
+
+    /* Used for beforeDelivery */
+    public Method getMethod() { return method; }
+
+    /* The handle for one endpoint, with type (argument) -> result */
+    public MethodHandle bindTo(Object endpoint) {
+        return handle.bindTo(endpoint);
+    }
+
+    /* The argument of the method for a message */
+    public Object argument(JsonObject message) {
+        return parsed ? message : message.toString();
+    }
+
+    /* The argument of the method for a message received as text */
+    public Object argument(JsonObject message, String text) {
+        return parsed ? message : text;
+    }
+}
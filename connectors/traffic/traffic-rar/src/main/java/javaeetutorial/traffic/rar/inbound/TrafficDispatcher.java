@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.traffic.rar.inbound;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.resource.ResourceException;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/* Delivers messages to a pool of MDB endpoints in parallel.
+ * Each endpoint has its own bounded queue (a lane). Messages with the
+ * same key always go to the same lane, so they are processed in the
+ * order they arrived. A lane is run by the work manager only while it
+ * has messages, and by one thread at a time, as endpoints require.
+ * When a lane is full, the subscriber waits until there is room or
+ * the lane is released. Messages for a released lane are dropped.
+ * The command methods are bound to the endpoint of each lane once,
+ * so a delivery is a direct method handle call. */
+public class TrafficDispatcher {
+
+    private static final Logger log = Logger.getLogger("TrafficDispatcher");
+    /* How often a subscriber waiting on a full lane checks for release */
+    private static final long OFFER_WAIT_MILLIS = 100;
+    private final WorkManager workManager;
+    private final List<Lane> lanes;
+
+    public TrafficDispatcher(WorkManager workManager,
+                             List<MessageEndpoint> endpoints,
+                             Collection<TrafficCommandMethod> commands,
+                             int queueSize) {
+        this.workManager = workManager;
+        lanes = new ArrayList<>(endpoints.size());
+        for (MessageEndpoint endpoint : endpoints)
+            lanes.add(new Lane(endpoint, commands, queueSize));
+    }
+
+    /* Queue a message for the lane of its key. The argument is the
+     * message in the form the command method takes, see
+     * TrafficCommandMethod.argument */
+    public void dispatch(String key, TrafficCommandMethod command, Object argument)
+                         throws InterruptedException, WorkException {
+        int index = (key.hashCode() & Integer.MAX_VALUE) % lanes.size();
+        lanes.get(index).deliver(new Delivery(command, argument));
+    }
+
+    /* Stop delivering and release the endpoints */
+    public void release() {
+        log.info("[TrafficDispatcher] release()");
+        for (Lane lane : lanes)
+            lane.release();
+    }
+
+    /* A message waiting for delivery */
+    private static class Delivery {
+        final TrafficCommandMethod command;
+        final Object argument;
+
+        Delivery(TrafficCommandMethod command, Object argument) {
+            this.command = command;
+            this.argument = argument;
+        }
+    }
+
+    /* An endpoint and its queue of messages */
+    private class Lane implements Work {
+
+        private final MessageEndpoint mdb;
+        /* The command methods bound to mdb, by command index */
+        private final MethodHandle[] handles;
+        private final BlockingQueue<Delivery> queue;
+        /* Guarded by this */
+        private boolean running;
+        private boolean released;
+
+        Lane(MessageEndpoint mdb, Collection<TrafficCommandMethod> commands,
+             int queueSize) {
+            this.mdb = mdb;
+            handles = new MethodHandle[commands.size()];
+            for (TrafficCommandMethod command : commands)
+                handles[command.getIndex()] = command.bindTo(mdb);
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        void deliver(Delivery delivery)
+                     throws InterruptedException, WorkException {
+            synchronized (this) {
+                if (released)
+                    return;
+            }
+            /* A released lane is never run again, so don't wait on it */
+            while (!queue.offer(delivery, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                synchronized (this) {
+                    if (released)
+                        return;
+                }
+            }
+            synchronized (this) {
+                if (released) {
+                    queue.clear();
+                    return;
+                }
+                if (running)
+                    return;
+                running = true;
+            }
+            try {
+                workManager.scheduleWork(this);
+            } catch (WorkException ex) {
+                /* The next delivery tries to schedule the lane again */
+                synchronized (this) {
+                    running = false;
+                    if (released)
+                        mdb.release();
+                }
+                throw ex;
+            }
+        }
+
+        /* Called by the work manager, delivers until the queue is empty */
+        @Override
+        public void run() {
+            while (true) {
+                Delivery delivery;
+                synchronized (this) {
+                    delivery = released ? null : queue.poll();
+                    if (delivery == null) {
+                        running = false;
+                        if (released)
+                            mdb.release();
+                        return;
+                    }
+                }
+                callMdb(delivery.command, delivery.argument);
+            }
+        }
+
+        @Override
+        public void release() {
+            synchronized (this) {
+                if (released)
+                    return;
+                released = true;
+                queue.clear();
+                if (running)
+                    return;
+            }
+            mdb.release();
+        }
+
+        /* Invoke a method from the MDB */
+        private Object callMdb(TrafficCommandMethod command, Object argument) {
+            Object resp;
+            try {
+                mdb.beforeDelivery(command.getMethod());
+                MethodHandle handle = handles[command.getIndex()];
+                resp = (Object) handle.invokeExact(argument);
+            } catch (Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                log.info(String.format("Invocation error %s", ex.getMessage()));
+                resp = "ERROR Invocation error - " + ex.getMessage();
+            }
+            try {
+                mdb.afterDelivery();
+            } catch (ResourceException ex) {
+                log.info(String.format("Delivery error %s", ex.getMessage()));
+            }
+            return resp;
+        }
+    }
+}
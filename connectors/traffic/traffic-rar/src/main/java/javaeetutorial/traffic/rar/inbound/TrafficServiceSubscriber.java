@@ -11,31 +11,37 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.json.Json;
-import javax.json.stream.JsonParser;
-import javax.json.stream.JsonParser.Event;
-import javax.resource.ResourceException;
-import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
 import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
 
 /* The RA runs this class to connect to the traffic information system
- * EIS and invoke methods on TrafficMdb */
+ * EIS and invoke methods on TrafficMdb.
+ * Reports (snapshots and deltas) are split by city, and the dispatcher
+ * delivers the report of each city to one of several MDB endpoints.
+ * The reports of a city are always processed in order. */
 public class TrafficServiceSubscriber implements Work {
 
     private static final Logger log = Logger.getLogger("TrafficServiceSocket");
-    private MessageEndpoint mdb;
+    private TrafficDispatcher dispatcher;
     private TrafficActivationSpec spec;
     private Socket socket;
     private volatile boolean listen;
 
     public TrafficServiceSubscriber(TrafficActivationSpec spec,
-                                    MessageEndpoint mdb) {
-        this.mdb = mdb;
+                                    TrafficDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
         this.spec = spec;
         listen = true;
     }
@@ -46,7 +52,7 @@ public class TrafficServiceSubscriber implements Work {
         BufferedReader in;
         String jsonLine;
         String key;
-        JsonParser parser;
+        JsonObject message;
         
         try {
             /* Connect to the traffic EIS */
@@ -56,46 +62,63 @@ public class TrafficServiceSubscriber implements Work {
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             log.info("[TrafficServiceSubscriber] Connected");
 
-            while (listen) {
-                jsonLine = in.readLine();
-                parser = Json.createParser(new StringReader(jsonLine));
-                if (parser.hasNext() && parser.next() == Event.START_OBJECT &&
-                    parser.hasNext() && parser.next() == Event.KEY_NAME) {
+            while (listen && (jsonLine = in.readLine()) != null) {
+                try (JsonReader reader = Json.createReader(new StringReader(jsonLine))) {
+                    message = reader.readObject();
+                } catch (JsonException ex) {
+                    message = null;
+                }
+                if (message != null && !message.isEmpty()) {
                     
-                    key = parser.getString();
+                    key = message.keySet().iterator().next();
                     /* Does the MDB support this message? */
                     if (spec.getCommands().containsKey(key)) {
-                        Method mdbMethod = spec.getCommands().get(key);
+                        TrafficCommandMethod command = spec.getCommands().get(key);
                         /* Invoke the method of the MDB */
-                        callMdb(mdb, mdbMethod, jsonLine);
+                        dispatch(key, command, message, jsonLine);
                     } else
                         log.info("[TrafficServerSubscriber] Unknown message");
                 } else
                     log.info("[TrafficServiceSubscriber] Wrong message format");
                 
             }
-        } catch (IOException | ResourceException ex) {
+        } catch (IOException | WorkException ex) {
             log.log(Level.INFO, "[TrafficServiceSubscriber] Error - {0}", ex.getMessage());
+        } catch (InterruptedException ex) {
+            log.info("[TrafficServiceSubscriber] Interrupted");
         }
     }
     
-    /* Invoke a method from the MDB */
-    private String callMdb(MessageEndpoint mdb, Method command, String... params) 
-                           throws ResourceException {
-        String resp;
-        try {
-            log.info("[TrafficServiceSubscriber] callMdb()");
-            mdb.beforeDelivery(command);
-            Object ret = command.invoke(mdb, (Object[]) params);
-            resp = (String) ret;
-        } catch (NoSuchMethodException | ResourceException | 
-                 IllegalAccessException | IllegalArgumentException | 
-                 InvocationTargetException ex) {
-            log.info(String.format("Invocation error %s", ex.getMessage()));
-            resp = "ERROR Invocation error - " + ex.getMessage();
+    /* Send one report per city, keyed by city, or the whole message
+     * keyed by command if it is not a list of entries */
+    private void dispatch(String key, TrafficCommandMethod command,
+                          JsonObject message, String jsonLine) 
+                          throws InterruptedException, WorkException {
+        JsonValue value = message.get(key);
+        if (value.getValueType() != JsonValue.ValueType.ARRAY) {
+            dispatcher.dispatch(key, command, command.argument(message, jsonLine));
+            return;
+        }
+        /* {"report":[ {"city":"city_i","access":"access_j","status":"status_k"}, ... ]}
+         * {"delta":[ ... ]} */
+        Map<String,JsonArrayBuilder> byCity = new LinkedHashMap<>();
+        for (JsonValue entry : (JsonArray) value) {
+            String city = "";
+            if (entry.getValueType() == JsonValue.ValueType.OBJECT)
+                city = ((JsonObject) entry).getString("city", "");
+            JsonArrayBuilder entries = byCity.get(city);
+            if (entries == null) {
+                entries = Json.createArrayBuilder();
+                byCity.put(city, entries);
+            }
+            entries.add(entry);
+        }
+        for (Map.Entry<String,JsonArrayBuilder> e : byCity.entrySet()) {
+            JsonObject report = Json.createObjectBuilder()
+                                    .add(key, e.getValue())
+                                    .build();
+            dispatcher.dispatch(e.getKey(), command, command.argument(report));
         }
-        mdb.afterDelivery();
-        return resp;
     }
 
     @Override
@@ -103,7 +126,8 @@ public class TrafficServiceSubscriber implements Work {
         log.info("[TrafficServiceSubscriber] release()");
         try {
             listen = false;
-            socket.close();
+            if (socket != null)
+                socket.close();
         } catch (IOException ex) { }
     }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.traffic.rar.inbound;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import javaeetutorial.traffic.rar.api.TrafficCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Messages per second passed to a command method of the MDB,
+ * through the bound method handle that TrafficDispatcher uses and
+ * through Method.invoke, as the subscriber did before. Run with:
+ * mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficCommandBenchmark {
+
+    public static class BenchmarkMdb {
+        @TrafficCommand(name = "report")
+        public String report(String report) {
+            return report;
+        }
+    }
+
+    private final String message = "{\"report\":[{\"city\":\"City1\","
+            + "\"access\":\"Route1\",\"status\":\"GREEN\"}]}";
+    private BenchmarkMdb mdb;
+    private Method method;
+    private MethodHandle handle;
+
+    @Setup
+    public void setup() throws Exception {
+        mdb = new BenchmarkMdb();
+        method = BenchmarkMdb.class.getMethod("report", String.class);
+        handle = new TrafficCommandMethod("report", 0, method).bindTo(mdb);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return (Object) handle.invokeExact((Object) message);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        String[] params = { message };
+        return method.invoke(mdb, (Object[]) params);
+    }
+}
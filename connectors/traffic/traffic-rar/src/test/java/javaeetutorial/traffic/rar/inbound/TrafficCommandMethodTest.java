@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.traffic.rar.inbound;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import javaeetutorial.traffic.rar.api.TrafficCommand;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.resource.spi.InvalidPropertyException;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkManager;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Finds the command methods of an MDB and invokes them through the
+ * bound method handles, directly and through TrafficDispatcher.
+ */
+public class TrafficCommandMethodTest {
+
+    /* An MDB endpoint with valid and invalid command methods */
+    public static class TestMdb implements MessageEndpoint {
+        final List<Object> received = new ArrayList<>();
+        int deliveries;
+        boolean released;
+
+        @TrafficCommand(name = "report")
+        public String report(JsonObject report) {
+            received.add(report);
+            return "OK";
+        }
+
+        @TrafficCommand(name = "text")
+        public void text(String text) {
+            received.add(text);
+        }
+
+        @TrafficCommand(name = "number")
+        public void number(int n) { }
+
+        @TrafficCommand(name = "pair")
+        public void pair(String a, String b) { }
+
+        @Override
+        public void beforeDelivery(Method method) {
+            deliveries++;
+        }
+
+        @Override
+        public void afterDelivery() { }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    /* Declares the "text" command twice */
+    public static class DuplicateMdb extends TestMdb {
+        @TrafficCommand(name = "text")
+        public void otherText(String text) { }
+    }
+
+    /* Runs the work in the calling thread */
+    static class DirectWorkManager implements WorkManager {
+        @Override
+        public void doWork(Work work) {
+            work.run();
+        }
+        @Override
+        public void doWork(Work work, long timeout, ExecutionContext ec,
+                           WorkListener listener) {
+            work.run();
+        }
+        @Override
+        public long startWork(Work work) {
+            work.run();
+            return 0;
+        }
+        @Override
+        public long startWork(Work work, long timeout, ExecutionContext ec,
+                              WorkListener listener) {
+            work.run();
+            return 0;
+        }
+        @Override
+        public void scheduleWork(Work work) {
+            work.run();
+        }
+        @Override
+        public void scheduleWork(Work work, long timeout, ExecutionContext ec,
+                                 WorkListener listener) {
+            work.run();
+        }
+    }
+
+    private static Map<String,TrafficCommandMethod> commands(Class mdbClass)
+            throws InvalidPropertyException {
+        TrafficActivationSpec spec = new TrafficActivationSpec();
+        spec.setBeanClass(mdbClass);
+        spec.findCommandsInMDB();
+        return spec.getCommands();
+    }
+
+    private static JsonObject report(String city) {
+        return Json.createObjectBuilder()
+                .add("report", Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder().add("city", city)))
+                .build();
+    }
+
+    @Test
+    public void testFindCommands() throws InvalidPropertyException {
+        Map<String,TrafficCommandMethod> commands = commands(TestMdb.class);
+        assertEquals(new HashSet<>(Arrays.asList("report", "text")),
+                     commands.keySet());
+        HashSet<Integer> indexes = new HashSet<>();
+        for (TrafficCommandMethod command : commands.values())
+            indexes.add(command.getIndex());
+        assertEquals(new HashSet<>(Arrays.asList(0, 1)), indexes);
+    }
+
+    @Test
+    public void testRejectOtherParameters() throws NoSuchMethodException {
+        assertFalse(TrafficCommandMethod.isCommand(
+                TestMdb.class.getMethod("number", int.class)));
+        assertFalse(TrafficCommandMethod.isCommand(
+                TestMdb.class.getMethod("pair", String.class, String.class)));
+        assertTrue(TrafficCommandMethod.isCommand(
+                TestMdb.class.getMethod("text", String.class)));
+        assertTrue(TrafficCommandMethod.isCommand(
+                TestMdb.class.getMethod("report", JsonObject.class)));
+    }
+
+    @Test
+    public void testRejectDuplicateNames() throws InvalidPropertyException {
+        Map<String,TrafficCommandMethod> commands = commands(DuplicateMdb.class);
+        assertEquals(new HashSet<>(Arrays.asList("report", "text")),
+                     commands.keySet());
+    }
+
+    @Test
+    public void testInvokeStringAndJsonCommands() throws Throwable {
+        Map<String,TrafficCommandMethod> commands = commands(TestMdb.class);
+        TestMdb mdb = new TestMdb();
+        JsonObject message = report("City1");
+        String text = message.toString();
+
+        TrafficCommandMethod report = commands.get("report");
+        Object argument = report.argument(message, text);
+        assertSame(message, argument);
+        MethodHandle handle = report.bindTo(mdb);
+        assertEquals("OK", (Object) handle.invokeExact(argument));
+
+        TrafficCommandMethod textCommand = commands.get("text");
+        argument = textCommand.argument(message, text);
+        assertSame(text, argument);
+        handle = textCommand.bindTo(mdb);
+        assertNull((Object) handle.invokeExact(argument));
+        /* Without the text, the message is converted */
+        assertEquals(text, textCommand.argument(message));
+
+        assertEquals(Arrays.<Object>asList(message, text), mdb.received);
+    }
+
+    @Test
+    public void testDispatch() throws Exception {
+        Map<String,TrafficCommandMethod> commands = commands(TestMdb.class);
+        TestMdb mdb1 = new TestMdb();
+        TestMdb mdb2 = new TestMdb();
+        TrafficDispatcher dispatcher = new TrafficDispatcher(
+                new DirectWorkManager(),
+                Arrays.<MessageEndpoint>asList(mdb1, mdb2),
+                commands.values(), 8);
+        TrafficCommandMethod report = commands.get("report");
+        List<Object> sent = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            JsonObject message = report("City1");
+            sent.add(message);
+            dispatcher.dispatch("City1", report, report.argument(message));
+        }
+        /* All the messages of a key go to the same endpoint, in order */
+        TestMdb lane = mdb1.received.isEmpty() ? mdb2 : mdb1;
+        assertEquals(sent, lane.received);
+        assertEquals(10, lane.deliveries);
+
+        dispatcher.release();
+        assertTrue(mdb1.released);
+        assertTrue(mdb2.released);
+    }
+
+    @Test(timeout = 5000)
+    public void testDispatchAfterRelease() throws Exception {
+        Map<String,TrafficCommandMethod> commands = commands(TestMdb.class);
+        TestMdb mdb = new TestMdb();
+        TrafficDispatcher dispatcher = new TrafficDispatcher(
+                new DirectWorkManager(),
+                Arrays.<MessageEndpoint>asList(mdb),
+                commands.values(), 2);
+        dispatcher.release();
+        assertTrue(mdb.released);
+        /* More messages than the lane holds are dropped, not waited on */
+        TrafficCommandMethod report = commands.get("report");
+        for (int i = 0; i < 5; i++)
+            dispatcher.dispatch("City1", report, report("City1"));
+        assertTrue(mdb.received.isEmpty());
+    }
+}
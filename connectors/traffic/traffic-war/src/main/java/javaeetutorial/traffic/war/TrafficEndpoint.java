@@ -8,10 +8,20 @@
 package javaeetutorial.traffic.war;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 import javax.websocket.Session;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
@@ -19,18 +29,29 @@ import javax.websocket.OnOpen;
 import javax.websocket.server.ServerEndpoint;
 
 /* This endpoint forwards to web clients the JSON messages 
- * received by the WebMDB bean from the JMS topic */
+ * received by the WebMDB bean from the JMS topic.
+ * The messages contain only the routes that changed. The endpoint
+ * keeps the status of all routes to send it to new clients. */
 @ServerEndpoint("/wstraffic")
 public class TrafficEndpoint {
     
     /* Queue for all open WebSocket sessions */
     static Queue<Session> queue = new ConcurrentLinkedQueue<>();
     
+    /* Last known status by access route */
+    private static final Map<String,String> routes = new LinkedHashMap<>();
+    
     private static final Logger log = Logger.getLogger("TrafficEndpoint");
     
     /* Called by WebMDB when it receives messages from the JMS topic */
     public static synchronized void sendAll(String msg) {
         log.info("[TrafficEndpoint] sendAll()");
+        try (JsonReader reader = Json.createReader(new StringReader(msg))) {
+            JsonObject update = reader.readObject();
+            for (Map.Entry<String,JsonValue> e : update.entrySet())
+                if (e.getValue() instanceof JsonString)
+                    routes.put(e.getKey(), ((JsonString) e.getValue()).getString());
+        }
         try {
             /* Send messages from the JMS queue to all sessions */
             for (Session session : queue) {
@@ -48,7 +69,27 @@ public class TrafficEndpoint {
     @OnOpen
     public void openConnection(Session session) {
         log.info("[TrafficEndpoint] openConnection()");
+        sendRoutes(session);
+    }
+    
+    /* Send the status of all routes to a new client before it receives
+     * the changes */
+    private static synchronized void sendRoutes(Session session) {
         queue.add(session);
+        if (routes.isEmpty())
+            return;
+        StringWriter swriter = new StringWriter();
+        try (JsonGenerator gen = Json.createGenerator(swriter)) {
+            gen.writeStartObject();
+            for (Map.Entry<String,String> e : routes.entrySet())
+                gen.write(e.getKey(), e.getValue());
+            gen.writeEnd();
+        }
+        try {
+            session.getBasicRemote().sendText(swriter.toString());
+        } catch (IOException e) {
+            log.log(Level.INFO, "[TrafficEndpoint] Exception: {0}", e.getMessage());
+        }
     }
     
     @OnClose
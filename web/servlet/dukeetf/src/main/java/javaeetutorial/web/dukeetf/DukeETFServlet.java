@@ -9,7 +9,10 @@ package javaeetutorial.web.dukeetf;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collections;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,27 +26,48 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/* Sends price and volume updates to browsers.
+ * Requests that accept text/event-stream (EventSource clients) are kept
+ * open and receive every update as a server-sent event, written with
+ * non-blocking output. Other requests are long-polled: they get the
+ * next update and are completed.
+ */
 @WebServlet(urlPatterns={"/dukeetf"}, asyncSupported=true)
 public class DukeETFServlet extends HttpServlet {
     private static final Logger logger = Logger.getLogger("DukeETFServlet");
     private static final long serialVersionUID = 2114153638027156979L;
     private Queue<AsyncContext> requestQueue;
+    private Set<EventStream> streams;
+    private int ticks;
     @EJB private PriceVolumeBean pvbean; 
     
     @Override
     public void init(ServletConfig config) {
         /* Queue for requests */
         requestQueue = new ConcurrentLinkedQueue<>();
+        /* Open event streams */
+        streams = Collections.newSetFromMap(new ConcurrentHashMap<>());
         /* Register with the bean that provides price/volume updates */
         pvbean.registerServlet(this);
     }
     
     /* PriceVolumeBean calls this method every second to send updates */
     public void send(double price, int volume) {
-        /* Send update to all connected clients */
+        String msg = String.format("%.2f / %d", price, volume);
+        /* Send update to all event streams, encoded once for all of them */
+        if (!streams.isEmpty()) {
+            byte[] event = EventStream.encode(msg);
+            for (EventStream stream : streams) {
+                stream.send(event);
+            }
+        }
+        /* Report slow event streams once a minute */
+        if (++ticks % 60 == 0) {
+            logSlowStreams();
+        }
+        /* Send update to all long-polling clients */
         for (AsyncContext acontext : requestQueue) {
             try {
-                String msg = String.format("%.2f / %d", price, volume);
                 PrintWriter writer = acontext.getResponse().getWriter();
                 writer.write(msg);
                 logger.log(Level.INFO, "Sent: {0}", msg);
@@ -56,9 +80,27 @@ public class DukeETFServlet extends HttpServlet {
         }
     }
     
+    /* Log the event streams whose client is falling behind */
+    private void logSlowStreams() {
+        for (EventStream stream : streams) {
+            long lag = stream.getLagMillis();
+            if (lag > 2000) {
+                logger.log(Level.INFO, "Slow stream: lag={0}ms sent={1} "
+                        + "conflated={2}", new Object[] {
+                        lag, stream.getSent(), stream.getConflated() });
+            }
+        }
+    }
+    
     /* Service method */
     @Override
-    public void doGet(HttpServletRequest request, HttpServletResponse response) {
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String accept = request.getHeader("Accept");
+        if (accept != null && accept.contains("text/event-stream")) {
+            openStream(request, response);
+            return;
+        }
         response.setContentType("text/html");
         /* Put request in async mode. */
         final AsyncContext acontext = request.startAsync();
@@ -86,4 +128,40 @@ public class DukeETFServlet extends HttpServlet {
         requestQueue.add(acontext);
         logger.log(Level.INFO, "Connection open.");
     }
+    
+    /* Keep the connection open and send it server-sent events */
+    private void openStream(HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final AsyncContext acontext = request.startAsync();
+        /* Streams stay open until the client goes away */
+        acontext.setTimeout(0);
+        final EventStream stream = new EventStream(acontext);
+        acontext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent ae) throws IOException {
+                streams.remove(stream);
+                logger.log(Level.INFO, "Stream closed.");
+            }
+            @Override
+            public void onTimeout(AsyncEvent ae) throws IOException {
+                streams.remove(stream);
+                stream.close();
+            }
+            @Override
+            public void onError(AsyncEvent ae) throws IOException {
+                streams.remove(stream);
+                stream.close();
+                logger.log(Level.INFO, "Stream error.");
+            }
+            @Override
+            public void onStartAsync(AsyncEvent ae) throws IOException { }
+        });
+        /* From now on the output is non-blocking */
+        acontext.getResponse().getOutputStream().setWriteListener(stream);
+        streams.add(stream);
+        logger.log(Level.INFO, "Stream open.");
+    }
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.dukeetf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/* One server-sent events connection.
+ * Events are written with non-blocking output: an event is written
+ * only when the output stream is ready, and the container calls
+ * onWritePossible when a write that could not complete is done.
+ * At most one event waits for a slow client. A newer event replaces
+ * it, so the client always gets the latest price and volume.
+ */
+public class EventStream implements WriteListener {
+
+    private static final Logger logger = Logger.getLogger("EventStream");
+    /* First event, tells the browser to reconnect after one second */
+    private static final byte[] RETRY =
+            "retry: 1000\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AsyncContext acontext;
+    private final ServletOutputStream output;
+    private byte[] pending = RETRY;
+    private long pendingSince = System.nanoTime();
+    private boolean closed;
+
+    /* Backpressure metrics */
+    private long sent;
+    private long conflated;
+
+    public EventStream(AsyncContext acontext) throws IOException {
+        this.acontext = acontext;
+        this.output = acontext.getResponse().getOutputStream();
+    }
+
+    /* Encode the text of an event once for all the connections */
+    public static byte[] encode(String data) {
+        return ("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /* Queue an event and write it if the client is ready */
+    public synchronized void send(byte[] event) {
+        if (closed) {
+            return;
+        }
+        if (pending != null) {
+            conflated++;
+        } else {
+            pendingSince = System.nanoTime();
+        }
+        pending = event;
+        try {
+            write();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        write();
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        logger.log(Level.INFO, "Stream error: {0}", t.toString());
+        close();
+    }
+
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            pending = null;
+            acontext.complete();
+        }
+    }
+
+    /* Time the pending event has been waiting, zero if there is none */
+    public synchronized long getLagMillis() {
+        return (pending == null) ? 0
+                : (System.nanoTime() - pendingSince) / 1000000;
+    }
+
+    /* Events replaced by a newer event before they were written */
+    public synchronized long getConflated() {
+        return conflated;
+    }
+
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /* Write the pending event and flush it, while the stream is ready */
+    private void write() throws IOException {
+        while (pending != null && output.isReady()) {
+            byte[] event = pending;
+            pending = null;
+            output.write(event);
+            sent++;
+            if (output.isReady()) {
+                output.flush();
+            }
+        }
+    }
+}
@@ -7,58 +7,149 @@
  */
 package javaeetutorial.web.dukeetf2;
 
-import java.io.IOException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
+import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
-/* WebSocket version of the dukeetf example */
+/* WebSocket version of the dukeetf example.
+ * Clients subscribe to instruments by sending text messages such as
+ * "subscribe DKEJ,DK0042" or "unsubscribe DK0042". New connections are
+ * subscribed to DKEJ. Each update is formatted once and queued only
+ * for the sessions that subscribed to its instrument. Sessions are
+ * sent to asynchronously, each from its own bounded queue, so a slow
+ * or broken client does not delay the others.
+ */
 @ServerEndpoint("/dukeetf")
 public class ETFEndpoint {
     private static final Logger logger = Logger.getLogger("ETFEndpoint");
-    /* Queue for all open WebSocket sessions */
-    static Queue<Session> queue = new ConcurrentLinkedQueue<>();
+    /* Messages that can wait for a slow client */
+    private static final int QUEUE_CAPACITY = 256;
+    /* Outbound queues of all open WebSocket sessions */
+    static Map<String, SessionQueue> queues = new ConcurrentHashMap<>();
+    /* Instruments and their subscribers, set by PriceVolumeBean */
+    private static volatile InstrumentTable table;
+    private static volatile TopicRouter router;
+
+    /* Outbound queue and subscriptions of this connection */
+    private SessionQueue queue;
+    private final BitSet topics = new BitSet();
+
+    /* PriceVolumeBean calls this method when it creates the instruments */
+    public static void init(InstrumentTable instruments) {
+        router = new TopicRouter(instruments.size());
+        table = instruments;
+    }
     
     /* PriceVolumeBean calls this method to send updates */
-    public static void send(double price, int volume) {
-        String msg = String.format("%.2f / %d", price, volume);
-        try {
-            /* Send updates to all open WebSocket sessions */
-            for (Session session : queue) {
-                session.getBasicRemote().sendText(msg);
-                logger.log(Level.INFO, "Sent: {0}", msg);
+    public static void send(int index) {
+        Set<SessionQueue> subscribers = router.getSubscribers(index);
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String symbol = table.getSymbol(index);
+        String msg = table.format(index);
+        /* Send the update to the sessions that subscribed to it */
+        for (SessionQueue subscriber : subscribers) {
+            try {
+                subscriber.offer(symbol, msg);
+            } catch (RuntimeException e) {
+                logger.log(Level.INFO, e.toString());
+            }
+        }
+        logger.log(Level.FINE, "Sent: {0}", msg);
+    }
+
+    /* Outbound metrics of all open WebSocket sessions */
+    public static List<SessionStats> getSessionStats() {
+        List<SessionStats> stats = new ArrayList<>(queues.size());
+        for (SessionQueue queue : queues.values()) {
+            stats.add(queue.getStats());
+        }
+        return stats;
+    }
+
+    /* Log the sessions that are falling behind */
+    public static void logSlowSessions(long maxLagMillis) {
+        for (SessionStats stats : getSessionStats()) {
+            if (stats.getLagMillis() > maxLagMillis || stats.getDropped() > 0) {
+                logger.log(Level.INFO, "Slow session: {0}", stats);
             }
-        } catch (IOException e) {
-            logger.log(Level.INFO, e.toString());
         }
     }
 
     @OnOpen
     public void openConnection(Session session) {
-        /* Register this connection in the queue */
-        queue.add(session);
+        /* Register this connection with its own outbound queue */
+        queue = new SessionQueue(session, QUEUE_CAPACITY, true);
+        queues.put(session.getId(), queue);
+        subscribe("DKEJ");
         logger.log(Level.INFO, "Connection opened.");
     }
+
+    @OnMessage
+    public void message(String msg) {
+        /* "subscribe SYMBOL,SYMBOL..." or "unsubscribe SYMBOL,SYMBOL..." */
+        String[] parts = msg.trim().split("\\s+", 2);
+        if (parts.length < 2) {
+            return;
+        }
+        for (String symbol : parts[1].split(",")) {
+            if ("subscribe".equals(parts[0])) {
+                subscribe(symbol.trim());
+            } else if ("unsubscribe".equals(parts[0])) {
+                unsubscribe(symbol.trim());
+            }
+        }
+    }
     
     @OnClose
     public void closedConnection(Session session) {
-        /* Remove this connection from the queue */
-        queue.remove(session);
+        /* Remove the queue and the subscriptions of this connection */
+        close(session);
         logger.log(Level.INFO, "Connection closed.");
     }
     
     @OnError
     public void error(Session session, Throwable t) {
-        /* Remove this connection from the queue */
-        queue.remove(session);
+        /* Remove the queue and the subscriptions of this connection */
+        close(session);
         logger.log(Level.INFO, t.toString());
         logger.log(Level.INFO, "Connection error.");
     }
+
+    private synchronized void subscribe(String symbol) {
+        int index = (table == null) ? -1 : table.indexOf(symbol);
+        if (index >= 0 && !topics.get(index)) {
+            topics.set(index);
+            router.subscribe(index, queue);
+        }
+    }
+
+    private synchronized void unsubscribe(String symbol) {
+        int index = (table == null) ? -1 : table.indexOf(symbol);
+        if (index >= 0 && topics.get(index)) {
+            topics.clear(index);
+            router.unsubscribe(index, queue);
+        }
+    }
+
+    private synchronized void close(Session session) {
+        queues.remove(session.getId());
+        for (int i = topics.nextSetBit(0); i >= 0; i = topics.nextSetBit(i + 1)) {
+            router.unsubscribe(i, queue);
+        }
+        topics.clear();
+    }
     
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.dukeetf2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* Latest price and volume of every instrument.
+ * Each instrument has an index from 0 to size() - 1, and its state is
+ * kept in primitive arrays at that index. Prices are in cents.
+ * Instrument 0 is DKEJ, the ETF of the original example.
+ */
+public class InstrumentTable {
+
+    private final String[] symbols;
+    private final Map<String, Integer> indexes;
+    private final long[] prices;
+    private final int[] volumes;
+
+    public InstrumentTable(int size) {
+        symbols = new String[size];
+        indexes = new HashMap<>(size * 2);
+        prices = new long[size];
+        volumes = new int[size];
+        for (int i = 0; i < size; i++) {
+            symbols[i] = (i == 0) ? "DKEJ" : String.format("DK%04d", i);
+            indexes.put(symbols[i], i);
+            prices[i] = 10000;
+            volumes[i] = 300000;
+        }
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public String getSymbol(int index) {
+        return symbols[index];
+    }
+
+    /* Index of a symbol, or -1 if there is no such instrument */
+    public int indexOf(String symbol) {
+        Integer index = indexes.get(symbol);
+        return (index == null) ? -1 : index;
+    }
+
+    /* Adjust the price and volume of an instrument */
+    public void update(int index, long priceChange, int volumeChange) {
+        prices[index] = Math.max(1, prices[index] + priceChange);
+        volumes[index] = Math.max(0, volumes[index] + volumeChange);
+    }
+
+    /* Text of an update, for example "DKEJ 100.25 / 301234" */
+    public String format(int index) {
+        long price = prices[index];
+        StringBuilder sb = new StringBuilder(32);
+        sb.append(symbols[index]).append(' ');
+        sb.append(price / 100).append('.');
+        long cents = price % 100;
+        if (cents < 10) {
+            sb.append('0');
+        }
+        sb.append(cents).append(" / ").append(volumes[index]);
+        return sb.toString();
+    }
+}
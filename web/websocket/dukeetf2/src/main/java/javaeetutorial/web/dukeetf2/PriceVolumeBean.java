@@ -18,15 +18,22 @@ import javax.ejb.Timeout;
 import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
 
-/* Updates price and volume information every second */
+/* Updates the price and volume of every instrument several times
+ * per second. The number of instruments and the interval between
+ * updates can be set with the "instruments" and "tickMillis"
+ * environment entries. */
 @Startup
 @Singleton
 public class PriceVolumeBean {
     /* Use the container's timer service */
     @Resource TimerService tservice;
+    @Resource(name = "instruments")
+    private Integer instruments = 2000;
+    @Resource(name = "tickMillis")
+    private Integer tickMillis = 250;
     private Random random;
-    private volatile double price = 100.0;
-    private volatile int volume = 300000;
+    private InstrumentTable table;
+    private int ticks;
     private static final Logger logger = Logger.getLogger("PriceVolumeBean");
     
     @PostConstruct
@@ -34,14 +41,21 @@ public class PriceVolumeBean {
         /* Initialize the EJB and create a timer */
         logger.log(Level.INFO, "Initializing EJB.");
         random = new Random();
-        tservice.createIntervalTimer(1000, 1000, new TimerConfig());
+        table = new InstrumentTable(instruments);
+        ETFEndpoint.init(table);
+        tservice.createIntervalTimer(tickMillis, tickMillis, new TimerConfig());
     }
     
     @Timeout
     public void timeout() {
-        /* Adjust price and volume and send updates */
-        price += 1.0*(random.nextInt(100)-50)/100.0;
-        volume += random.nextInt(5000) - 2500;
-        ETFEndpoint.send(price, volume);
+        /* Adjust prices and volumes and send updates */
+        for (int i = 0; i < table.size(); i++) {
+            table.update(i, random.nextInt(100) - 50, random.nextInt(5000) - 2500);
+            ETFEndpoint.send(i);
+        }
+        /* Report slow clients once a minute */
+        if (++ticks % Math.max(1, 60000 / tickMillis) == 0) {
+            ETFEndpoint.logSlowSessions(2000);
+        }
     }
 }
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.dukeetf2;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/* Outbound queue of one WebSocket session.
+ * Messages are sent with the asynchronous remote endpoint, one at a
+ * time: the next message is sent when the container reports that the
+ * previous one is complete. The queue is bounded, so a slow client
+ * only delays itself. When a message is queued for a key that already
+ * has a pending message, the pending message is replaced (conflation).
+ * When the queue is full, the oldest message is discarded.
+ */
+public class SessionQueue implements SendHandler {
+
+    private static final Logger logger = Logger.getLogger("SessionQueue");
+
+    /* A message waiting to be sent */
+    private static class Frame {
+        final String key;
+        String text;
+        long queuedNanos;
+
+        Frame(String key, String text, long queuedNanos) {
+            this.key = key;
+            this.text = text;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final boolean conflate;
+    private final ArrayDeque<Frame> pending;
+    /* Pending messages by key, for conflation */
+    private final Map<String, Frame> pendingByKey;
+    private boolean sending;
+    private long sendingSince;
+    private boolean failed;
+
+    /* Metrics */
+    private long sent;
+    private long conflated;
+    private long dropped;
+    private long lastLatencyNanos;
+
+    public SessionQueue(Session session, int capacity, boolean conflate) {
+        this.session = session;
+        this.capacity = capacity;
+        this.conflate = conflate;
+        this.pending = new ArrayDeque<>(capacity);
+        this.pendingByKey = new HashMap<>(capacity * 2);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /* Queue a message for this session and start sending it
+     * if no other message is on its way */
+    public void offer(String key, String text) {
+        long now = System.nanoTime();
+        Frame next;
+        synchronized (this) {
+            if (failed || (conflate && replace(key, text))) {
+                return;
+            }
+            if (pending.size() == capacity) {
+                forget(pending.poll());
+                dropped++;
+            }
+            Frame frame = new Frame(key, text, now);
+            pending.add(frame);
+            if (conflate) {
+                pendingByKey.put(key, frame);
+            }
+            if (sending) {
+                return;
+            }
+            next = startNext();
+        }
+        send(next);
+    }
+
+    /* Called by the container when a message has been sent */
+    @Override
+    public void onResult(SendResult result) {
+        if (!result.isOK()) {
+            logger.log(Level.INFO, "Send failed: {0}", result.getException());
+            /* Stop sending to this session, the container closes it */
+            synchronized (this) {
+                pending.clear();
+                pendingByKey.clear();
+                sending = false;
+                failed = true;
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        Frame next;
+        synchronized (this) {
+            sent++;
+            lastLatencyNanos = now - sendingSince;
+            next = startNext();
+        }
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    /* Metrics of this session */
+    public synchronized SessionStats getStats() {
+        long now = System.nanoTime();
+        long lagNanos = 0;
+        if (sending) {
+            lagNanos = now - sendingSince;
+        } else if (!pending.isEmpty()) {
+            lagNanos = now - pending.peek().queuedNanos;
+        }
+        return new SessionStats(session.getId(), pending.size(), sent,
+                                conflated, dropped, lagNanos / 1000000,
+                                lastLatencyNanos / 1000000);
+    }
+
+    /* Replace the text of a pending message with the same key */
+    private boolean replace(String key, String text) {
+        Frame frame = pendingByKey.get(key);
+        if (frame == null) {
+            return false;
+        }
+        frame.text = text;
+        conflated++;
+        return true;
+    }
+
+    /* Remove a message that leaves the queue from the key index */
+    private void forget(Frame frame) {
+        if (frame != null && pendingByKey.get(frame.key) == frame) {
+            pendingByKey.remove(frame.key);
+        }
+    }
+
+    /* Take the next message to send, or null if there is none */
+    private Frame startNext() {
+        Frame next = pending.poll();
+        forget(next);
+        sending = (next != null);
+        if (sending) {
+            sendingSince = next.queuedNanos;
+        }
+        return next;
+    }
+
+    private void send(Frame frame) {
+        try {
+            session.getAsyncRemote().sendText(frame.text, this);
+        } catch (RuntimeException e) {
+            /* The session is closed or closing */
+            onResult(new SendResult(e));
+        }
+    }
+}
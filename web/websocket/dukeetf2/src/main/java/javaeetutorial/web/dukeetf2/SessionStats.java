@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.dukeetf2;
+
+/* Snapshot of the outbound metrics of one WebSocket session */
+public class SessionStats {
+
+    private final String sessionId;
+    private final int queued;
+    private final long sent;
+    private final long conflated;
+    private final long dropped;
+    private final long lagMillis;
+    private final long lastLatencyMillis;
+
+    public SessionStats(String sessionId, int queued, long sent,
+                        long conflated, long dropped, long lagMillis,
+                        long lastLatencyMillis) {
+        this.sessionId = sessionId;
+        this.queued = queued;
+        this.sent = sent;
+        this.conflated = conflated;
+        this.dropped = dropped;
+        this.lagMillis = lagMillis;
+        this.lastLatencyMillis = lastLatencyMillis;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /* Messages waiting to be sent */
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /* Messages replaced by a newer message with the same key */
+    public long getConflated() {
+        return conflated;
+    }
+
+    /* Messages discarded because the queue was full */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /* Age of the oldest message not yet sent */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /* Time from queuing to completion of the last message sent */
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s queued=%d sent=%d conflated=%d dropped=%d "
+                + "lag=%dms latency=%dms", sessionId, queued, sent,
+                conflated, dropped, lagMillis, lastLatencyMillis);
+    }
+}
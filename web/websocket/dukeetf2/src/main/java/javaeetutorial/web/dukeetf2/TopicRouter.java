@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.dukeetf2;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Subscribers of each instrument.
+ * The subscribers of an instrument are found by its index in the
+ * instrument table, so an update only goes to the sessions that
+ * subscribed to that instrument.
+ */
+public class TopicRouter {
+
+    private final Set<SessionQueue>[] topics;
+
+    @SuppressWarnings("unchecked")
+    public TopicRouter(int size) {
+        topics = new Set[size];
+        for (int i = 0; i < size; i++) {
+            topics[i] = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        }
+    }
+
+    public void subscribe(int index, SessionQueue queue) {
+        topics[index].add(queue);
+    }
+
+    public void unsubscribe(int index, SessionQueue queue) {
+        topics[index].remove(queue);
+    }
+
+    public Set<SessionQueue> getSubscribers(int index) {
+        return topics[index];
+    }
+}
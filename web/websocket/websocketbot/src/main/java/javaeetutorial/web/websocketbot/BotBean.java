@@ -9,36 +9,66 @@ package javaeetutorial.web.websocketbot;
 
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.inject.Named;
 
+/* The bot answers after a short pause, like a person typing.
+ * The pause does not hold a thread: the answer is computed right away
+ * and a scheduled task completes the future when the pause is over.
+ */
 @Named
 public class BotBean {
+    /* Pause before the bot answers */
+    private static final long DELAY_MILLIS = 1200;
+    /* The questions the bot understands, in order of preference */
+    private static final KeywordMatcher questions = KeywordMatcher.of(
+            "how are you", "how old are you",
+            "when is your birthday", "your favorite color");
+    /* Executor service for the delayed answers */
+    @Resource(lookup="java:comp/DefaultManagedScheduledExecutorService")
+    private ManagedScheduledExecutorService mses;
+
+    /* Respond to a message from the chat after the pause */
+    public CompletableFuture<String> respondLater(String msg) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final String response = respond(msg);
+        mses.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.complete(response);
+            }
+        }, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        return future;
+    }
     
     /* Respond to a message from the chat */
     public String respond(String msg) {
         String response;           
         
-        /* Remove question marks */
-        msg = msg.toLowerCase().replaceAll("\\?", "");
-        if (msg.contains("how are you")) {
-            response = "I'm doing great, thank you!";
-        } else if (msg.contains("how old are you")) {
-            Calendar dukesBirthday = new GregorianCalendar(1995, Calendar.MAY, 23);
-            Calendar now = GregorianCalendar.getInstance();
-            int dukesAge = now.get(Calendar.YEAR) - dukesBirthday.get(Calendar.YEAR);
-            response = String.format("I'm %d years old.", dukesAge);
-        } else if (msg.contains("when is your birthday")) {
-            response = "My birthday is on May 23rd. Thanks for asking!";
-        } else if (msg.contains("your favorite color")) {
-            response = "My favorite color is blue. What's yours?";
-        } else {
-            response = "Sorry, I did not understand what you said. ";
-            response += "You can ask me how I'm doing today; how old I am; or ";
-            response += "what my favorite color is.";
+        switch (questions.match(msg)) {
+            case 0:
+                response = "I'm doing great, thank you!";
+                break;
+            case 1:
+                Calendar dukesBirthday = new GregorianCalendar(1995, Calendar.MAY, 23);
+                Calendar now = GregorianCalendar.getInstance();
+                int dukesAge = now.get(Calendar.YEAR) - dukesBirthday.get(Calendar.YEAR);
+                response = String.format("I'm %d years old.", dukesAge);
+                break;
+            case 2:
+                response = "My birthday is on May 23rd. Thanks for asking!";
+                break;
+            case 3:
+                response = "My favorite color is blue. What's yours?";
+                break;
+            default:
+                response = "Sorry, I did not understand what you said. ";
+                response += "You can ask me how I'm doing today; how old I am; or ";
+                response += "what my favorite color is.";
         }
-        try {
-            Thread.sleep(1200);
-        } catch (InterruptedException ex) { }
         return response;
     }
 }
@@ -7,25 +7,14 @@
  */
 package javaeetutorial.web.websocketbot;
 
-import javaeetutorial.web.websocketbot.encoders.UsersMessageEncoder;
-import javaeetutorial.web.websocketbot.encoders.ChatMessageEncoder;
-import javaeetutorial.web.websocketbot.encoders.InfoMessageEncoder;
-import javaeetutorial.web.websocketbot.encoders.JoinMessageEncoder;
 import javaeetutorial.web.websocketbot.messages.ChatMessage;
-import javaeetutorial.web.websocketbot.messages.UsersMessage;
 import javaeetutorial.web.websocketbot.messages.JoinMessage;
-import javaeetutorial.web.websocketbot.messages.InfoMessage;
 import javaeetutorial.web.websocketbot.decoders.MessageDecoder;
 import javaeetutorial.web.websocketbot.messages.Message;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.Resource;
-import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
-import javax.websocket.EncodeException;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
@@ -33,12 +22,11 @@ import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
-/* Websocket endpoint */
+/* Websocket endpoint
+ * Outgoing messages are encoded and sent by the chat room */
 @ServerEndpoint(
         value = "/websocketbot",
-        decoders = { MessageDecoder.class }, 
-        encoders = { JoinMessageEncoder.class, ChatMessageEncoder.class, 
-                     InfoMessageEncoder.class, UsersMessageEncoder.class }
+        decoders = { MessageDecoder.class }
         )
 /* There is a BotEndpoint instance per connetion */
 public class BotEndpoint {
@@ -46,12 +34,13 @@ public class BotEndpoint {
     /* Bot functionality bean */
     @Inject
     private BotBean botbean;
-    /* Executor service for asynchronous processing */
-    @Resource(name="comp/DefaultManagedExecutorService")
-    private ManagedExecutorService mes;
+    /* Connections and users of the chat */
+    @Inject
+    private ChatRoom room;
     
     @OnOpen
     public void openConnection(Session session) {
+        room.open(session);
         logger.log(Level.INFO, "Connection opened.");
     }
     
@@ -62,27 +51,21 @@ public class BotEndpoint {
         if (msg instanceof JoinMessage) {
             /* Add the new user and notify everybody */
             JoinMessage jmsg = (JoinMessage) msg;
-            session.getUserProperties().put("name", jmsg.getName());
-            session.getUserProperties().put("active", true);
             logger.log(Level.INFO, "Received: {0}", jmsg.toString());
-            sendAll(session, new InfoMessage(jmsg.getName() + 
-                    " has joined the chat"));
-            sendAll(session, new ChatMessage("Duke", jmsg.getName(),
-                    "Hi there!!"));
-            sendAll(session, new UsersMessage(this.getUserList(session)));
+            room.join(session, jmsg.getName());
             
         } else if (msg instanceof ChatMessage) {
             /* Forward the message to everybody */
             final ChatMessage cmsg = (ChatMessage) msg;
             logger.log(Level.INFO, "Received: {0}", cmsg.toString());
-            sendAll(session, cmsg);
+            room.broadcast(cmsg);
             if (cmsg.getTarget().compareTo("Duke") == 0) {
                 /* The bot replies to the message */
-                mes.submit(new Runnable() {
+                botbean.respondLater(cmsg.getMessage()).thenAccept(
+                        new Consumer<String>() {
                     @Override
-                    public void run() {
-                        String resp = botbean.respond(cmsg.getMessage());
-                        sendAll(session, new ChatMessage("Duke", 
+                    public void accept(String resp) {
+                        room.broadcast(new ChatMessage("Duke", 
                                 cmsg.getName(), resp));
                     }
                 });
@@ -93,12 +76,7 @@ public class BotEndpoint {
     @OnClose
     public void closedConnection(Session session) {
         /* Notify everybody */
-        session.getUserProperties().put("active", false);
-        if (session.getUserProperties().containsKey("name")) {
-            String name = session.getUserProperties().get("name").toString();
-            sendAll(session, new InfoMessage(name + " has left the chat"));
-            sendAll(session, new UsersMessage(this.getUserList(session)));
-        }
+        room.leave(session);
         logger.log(Level.INFO, "Connection closed.");
     }
     
@@ -106,30 +84,4 @@ public class BotEndpoint {
     public void error(Session session, Throwable t) {
         logger.log(Level.INFO, "Connection error ({0})", t.toString());
     }
-    
-    /* Forward a message to all connected clients
-     * The endpoint figures what encoder to use based on the message type */
-    public synchronized void sendAll(Session session, Object msg) {
-        try {
-            for (Session s : session.getOpenSessions()) {
-                if (s.isOpen()) {
-                    s.getBasicRemote().sendObject(msg);
-                    logger.log(Level.INFO, "Sent: {0}", msg.toString());
-                }
-            }
-        } catch (IOException | EncodeException e) {
-            logger.log(Level.INFO, e.toString());
-        }   
-    }
-    
-    /* Returns the list of users from the properties of all open sessions */
-    public List<String> getUserList(Session session) {
-        List<String> users = new ArrayList<>();
-        users.add("Duke");
-        for (Session s : session.getOpenSessions()) {
-            if (s.isOpen() && (boolean) s.getUserProperties().get("active"))
-                users.add(s.getUserProperties().get("name").toString());
-        }
-        return users;
-    }
 }
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.websocketbot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javaeetutorial.web.websocketbot.encoders.ChatMessageEncoder;
+import javaeetutorial.web.websocketbot.encoders.InfoMessageEncoder;
+import javaeetutorial.web.websocketbot.encoders.JoinMessageEncoder;
+import javaeetutorial.web.websocketbot.encoders.UsersMessageEncoder;
+import javaeetutorial.web.websocketbot.messages.ChatMessage;
+import javaeetutorial.web.websocketbot.messages.InfoMessage;
+import javaeetutorial.web.websocketbot.messages.JoinMessage;
+import javaeetutorial.web.websocketbot.messages.Message;
+import javaeetutorial.web.websocketbot.messages.UsersMessage;
+import javax.enterprise.context.ApplicationScoped;
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
+
+/* The chat room.
+ * Keeps the outbound queue of every open connection and the names of
+ * the users that joined the chat. A message is encoded as JSON once
+ * and then queued for every connection.
+ */
+@ApplicationScoped
+public class ChatRoom {
+    private static final Logger logger = Logger.getLogger("ChatRoom");
+    /* Messages that can wait for a slow client */
+    private static final int QUEUE_CAPACITY = 128;
+    /* Key of the users messages, only the latest list is sent */
+    private static final String USERS_KEY = "users";
+
+    private final ChatMessageEncoder chatEncoder = new ChatMessageEncoder();
+    private final InfoMessageEncoder infoEncoder = new InfoMessageEncoder();
+    private final JoinMessageEncoder joinEncoder = new JoinMessageEncoder();
+    private final UsersMessageEncoder usersEncoder = new UsersMessageEncoder();
+
+    /* Outbound queues by session id */
+    private final Map<String, SessionQueue> members = new ConcurrentHashMap<>();
+    /* Names of the users in the chat by session id, in order of arrival */
+    private final Map<String, String> users = new LinkedHashMap<>();
+
+    public void open(Session session) {
+        members.put(session.getId(), new SessionQueue(session, QUEUE_CAPACITY));
+    }
+
+    /* Add a user and notify everybody */
+    public synchronized void join(Session session, String name) {
+        users.put(session.getId(), name);
+        broadcast(new InfoMessage(name + " has joined the chat"));
+        broadcast(new ChatMessage("Duke", name, "Hi there!!"));
+        broadcastUsers();
+    }
+
+    /* Remove a connection and notify everybody if the user had joined */
+    public synchronized void leave(Session session) {
+        members.remove(session.getId());
+        String name = users.remove(session.getId());
+        if (name != null) {
+            broadcast(new InfoMessage(name + " has left the chat"));
+            broadcastUsers();
+        }
+    }
+
+    /* Forward a message to all connected clients */
+    public void broadcast(Message msg) {
+        send(null, msg);
+    }
+
+    /* The list of users, with the bot first */
+    private void broadcastUsers() {
+        List<String> list = new ArrayList<>(users.size() + 1);
+        list.add("Duke");
+        list.addAll(users.values());
+        send(USERS_KEY, new UsersMessage(list));
+    }
+
+    private void send(String key, Message msg) {
+        String text;
+        try {
+            text = encode(msg);
+        } catch (EncodeException e) {
+            logger.log(Level.INFO, e.toString());
+            return;
+        }
+        for (SessionQueue queue : members.values()) {
+            queue.offer(key, text);
+        }
+        logger.log(Level.INFO, "Sent: {0}", msg.toString());
+    }
+
+    /* Use the encoder for the message type */
+    private String encode(Message msg) throws EncodeException {
+        if (msg instanceof ChatMessage) {
+            return chatEncoder.encode((ChatMessage) msg);
+        } else if (msg instanceof InfoMessage) {
+            return infoEncoder.encode((InfoMessage) msg);
+        } else if (msg instanceof UsersMessage) {
+            return usersEncoder.encode((UsersMessage) msg);
+        } else if (msg instanceof JoinMessage) {
+            return joinEncoder.encode((JoinMessage) msg);
+        }
+        throw new EncodeException(msg, "No encoder for this message.");
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.websocketbot;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/* Finds keywords in a text in a single pass (Aho-Corasick automaton).
+ * The automaton is built once from a list of lowercase keywords.
+ * The text is matched ignoring case and question marks. The result
+ * is the lowest position in the list of a keyword that the text
+ * contains, or -1 if the text contains none of them.
+ */
+public class KeywordMatcher {
+
+    /* A state of the automaton */
+    private static class Node {
+        final Map<Character, Node> next = new HashMap<>();
+        Node fail;
+        /* Lowest keyword position that ends in this state, or MAX_VALUE */
+        int match = Integer.MAX_VALUE;
+    }
+
+    private final Node root = new Node();
+
+    public KeywordMatcher(List<String> keywords) {
+        /* A trie of the keywords */
+        for (int i = 0; i < keywords.size(); i++) {
+            Node node = root;
+            for (char c : keywords.get(i).toCharArray()) {
+                Node child = node.next.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.next.put(c, child);
+                }
+                node = child;
+            }
+            node.match = Math.min(node.match, i);
+        }
+        /* Failure links, in breadth-first order */
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> e : node.next.entrySet()) {
+                Node child = e.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(e.getKey())) {
+                    fail = fail.fail;
+                }
+                Node target = fail.next.get(e.getKey());
+                child.fail = (target != null) ? target : root;
+                child.match = Math.min(child.match, child.fail.match);
+                queue.add(child);
+            }
+        }
+    }
+
+    /* Position of the first keyword in the list that the text contains */
+    public int match(String text) {
+        int best = Integer.MAX_VALUE;
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c == '?') {
+                continue;
+            }
+            while (node != root && !node.next.containsKey(c)) {
+                node = node.fail;
+            }
+            Node next = node.next.get(c);
+            node = (next != null) ? next : root;
+            best = Math.min(best, node.match);
+        }
+        return (best == Integer.MAX_VALUE) ? -1 : best;
+    }
+
+    /* Convenience method for a fixed list of keywords */
+    public static KeywordMatcher of(String... keywords) {
+        return new KeywordMatcher(Arrays.asList(keywords));
+    }
+}
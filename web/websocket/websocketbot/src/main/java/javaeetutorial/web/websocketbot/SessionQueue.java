@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.websocketbot;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/* Outbound queue of one WebSocket session.
+ * Messages are sent with the asynchronous remote endpoint, one at a
+ * time: the next message is sent when the container reports that the
+ * previous one is complete. The queue is bounded, so a slow client
+ * only delays itself. A message queued with a key replaces a pending
+ * message with the same key, for example an older list of users.
+ * When the queue is full, the oldest message is discarded.
+ */
+public class SessionQueue implements SendHandler {
+
+    private static final Logger logger = Logger.getLogger("SessionQueue");
+
+    /* A message waiting to be sent */
+    private static class Frame {
+        final String key;
+        String text;
+
+        Frame(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final ArrayDeque<Frame> pending;
+    /* Pending messages that have a key */
+    private final Map<String, Frame> pendingByKey = new HashMap<>();
+    private boolean sending;
+    private boolean failed;
+    private long dropped;
+
+    public SessionQueue(Session session, int capacity) {
+        this.session = session;
+        this.capacity = capacity;
+        this.pending = new ArrayDeque<>(capacity);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /* Queue a message for this session and start sending it
+     * if no other message is on its way. The key can be null. */
+    public void offer(String key, String text) {
+        Frame next;
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            if (key != null && pendingByKey.containsKey(key)) {
+                pendingByKey.get(key).text = text;
+                return;
+            }
+            if (pending.size() == capacity) {
+                forget(pending.poll());
+                if (++dropped % 100 == 1) {
+                    logger.log(Level.INFO, "Session {0} is too slow, {1} "
+                            + "messages dropped", new Object[] {
+                            session.getId(), dropped });
+                }
+            }
+            Frame frame = new Frame(key, text);
+            pending.add(frame);
+            if (key != null) {
+                pendingByKey.put(key, frame);
+            }
+            if (sending) {
+                return;
+            }
+            next = startNext();
+        }
+        send(next);
+    }
+
+    /* Called by the container when a message has been sent */
+    @Override
+    public void onResult(SendResult result) {
+        if (!result.isOK()) {
+            logger.log(Level.INFO, "Send failed: {0}", result.getException());
+            /* Stop sending to this session, the container closes it */
+            synchronized (this) {
+                pending.clear();
+                pendingByKey.clear();
+                sending = false;
+                failed = true;
+            }
+            return;
+        }
+        Frame next;
+        synchronized (this) {
+            next = startNext();
+        }
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    /* Remove a message that leaves the queue from the key index */
+    private void forget(Frame frame) {
+        if (frame != null && frame.key != null) {
+            pendingByKey.remove(frame.key);
+        }
+    }
+
+    /* Take the next message to send, or null if there is none */
+    private Frame startNext() {
+        Frame next = pending.poll();
+        forget(next);
+        sending = (next != null);
+        return next;
+    }
+
+    private void send(Frame frame) {
+        try {
+            session.getAsyncRemote().sendText(frame.text, this);
+        } catch (RuntimeException e) {
+            /* The session is closed or closing */
+            onResult(new SendResult(e));
+        }
+    }
+}
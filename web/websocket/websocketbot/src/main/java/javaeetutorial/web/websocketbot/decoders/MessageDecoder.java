@@ -8,14 +8,11 @@
 package javaeetutorial.web.websocketbot.decoders;
 
 import java.io.StringReader;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 import javaeetutorial.web.websocketbot.messages.ChatMessage;
 import javaeetutorial.web.websocketbot.messages.JoinMessage;
 import javaeetutorial.web.websocketbot.messages.Message;
 import javax.json.Json;
+import javax.json.JsonException;
 import javax.json.stream.JsonParser;
 import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
@@ -25,10 +22,12 @@ import javax.websocket.EndpointConfig;
  * For example, the incoming message
  * {"type":"chat","name":"Peter","target":"Duke","message":"How are you?"}
  * is decoded as (new ChatMessage("Peter", "Duke", "How are you?"))
+ *
+ * The message is parsed once, in decode. The fields are read into
+ * local variables, so the decoder keeps no state between messages
+ * and can be shared by several connections.
  */
 public class MessageDecoder implements Decoder.Text<Message> {
-    /* Stores the name-value pairs from a JSON message as a Map */
-    private Map<String,String> messageMap;
 
     @Override
     public void init(EndpointConfig ec) { }
@@ -39,54 +38,51 @@ public class MessageDecoder implements Decoder.Text<Message> {
     /* Create a new Message object if the message can be decoded */
     @Override
     public Message decode(String string) throws DecodeException {
-        Message msg = null;
-        if (willDecode(string)) {
-            switch (messageMap.get("type")) {
-                case "join":
-                    msg = new JoinMessage(messageMap.get("name"));
-                    break;
-                case "chat":
-                    msg = new ChatMessage(messageMap.get("name"),
-                                          messageMap.get("target"),
-                                          messageMap.get("message"));
+        String type = null;
+        String name = null;
+        String target = null;
+        String message = null;
+        try (JsonParser parser = Json.createParser(new StringReader(string))) {
+            while (parser.hasNext()) {
+                if (parser.next() != JsonParser.Event.KEY_NAME) {
+                    continue;
+                }
+                String key = parser.getString();
+                if (parser.next() != JsonParser.Event.VALUE_STRING) {
+                    continue;
+                }
+                switch (key) {
+                    case "type":
+                        type = parser.getString();
+                        break;
+                    case "name":
+                        name = parser.getString();
+                        break;
+                    case "target":
+                        target = parser.getString();
+                        break;
+                    case "message":
+                        message = parser.getString();
+                        break;
+                }
             }
-        } else {
-            throw new DecodeException(string, "[Message] Can't decode.");
+        } catch (JsonException e) {
+            throw new DecodeException(string, "[Message] Can't decode.", e);
         }
-        return msg;
+        /* Check the kind of message and if all fields are included */
+        if ("join".equals(type) && name != null) {
+            return new JoinMessage(name);
+        } else if ("chat".equals(type) && name != null && target != null
+                   && message != null) {
+            return new ChatMessage(name, target, message);
+        }
+        throw new DecodeException(string, "[Message] Can't decode.");
     }
     
-    /* Decode a JSON message into a Map and check if it contains
-     * all the required fields according to its type. */
+    /* Only JSON objects with a type can be decoded. The message is
+     * parsed and checked in decode, instead of being parsed twice. */
     @Override
     public boolean willDecode(String string) {
-        boolean decodes = false;
-        /* Convert the message into a map */
-        messageMap = new HashMap<>();
-        JsonParser parser = Json.createParser(new StringReader(string));
-        while (parser.hasNext()) {
-            if (parser.next() == JsonParser.Event.KEY_NAME) {
-                String key = parser.getString();
-                parser.next();
-                String value = parser.getString();
-                messageMap.put(key, value);
-            }
-        }
-        /* Check the kind of message and if all fields are included */
-        Set keys = messageMap.keySet();
-        if (keys.contains("type")) {
-            switch (messageMap.get("type")) {
-                case "join":
-                    if (keys.contains("name"))
-                        decodes = true;
-                    break;
-                case "chat":
-                    String[] chatMsgKeys = {"name", "target", "message"};
-                    if (keys.containsAll(Arrays.asList(chatMsgKeys)))
-                        decodes = true;
-                    break;
-            }
-        }
-        return decodes;
+        return string.indexOf('{') >= 0 && string.contains("\"type\"");
     }
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.websocketbot.decoders;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javaeetutorial.web.websocketbot.messages.ChatMessage;
+import javaeetutorial.web.websocketbot.messages.JoinMessage;
+import javaeetutorial.web.websocketbot.messages.Message;
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.websocket.DecodeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Chat messages decoded per second by MessageDecoder and by the
+ * decoder it replaced, which parsed each message into a map in
+ * willDecode and read the map in decode. Run with:
+ * mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDecoderBenchmark {
+
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final MapDecoder mapDecoder = new MapDecoder();
+
+    @Benchmark
+    public Message decoder() throws DecodeException {
+        String string = MessageDecoderTest.CHAT;
+        return decoder.willDecode(string) ? decoder.decode(string) : null;
+    }
+
+    @Benchmark
+    public Message mapDecoder() throws DecodeException {
+        String string = MessageDecoderTest.CHAT;
+        return mapDecoder.willDecode(string) ? mapDecoder.decode(string) : null;
+    }
+
+    /* The previous MessageDecoder */
+    private static class MapDecoder {
+        private Map<String,String> messageMap;
+
+        Message decode(String string) throws DecodeException {
+            Message msg = null;
+            if (willDecode(string)) {
+                switch (messageMap.get("type")) {
+                    case "join":
+                        msg = new JoinMessage(messageMap.get("name"));
+                        break;
+                    case "chat":
+                        msg = new ChatMessage(messageMap.get("name"),
+                                              messageMap.get("target"),
+                                              messageMap.get("message"));
+                }
+            } else {
+                throw new DecodeException(string, "[Message] Can't decode.");
+            }
+            return msg;
+        }
+
+        boolean willDecode(String string) {
+            boolean decodes = false;
+            messageMap = new HashMap<>();
+            JsonParser parser = Json.createParser(new StringReader(string));
+            while (parser.hasNext()) {
+                if (parser.next() == JsonParser.Event.KEY_NAME) {
+                    String key = parser.getString();
+                    parser.next();
+                    String value = parser.getString();
+                    messageMap.put(key, value);
+                }
+            }
+            Set keys = messageMap.keySet();
+            if (keys.contains("type")) {
+                switch (messageMap.get("type")) {
+                    case "join":
+                        if (keys.contains("name"))
+                            decodes = true;
+                        break;
+                    case "chat":
+                        String[] chatMsgKeys = {"name", "target", "message"};
+                        if (keys.containsAll(Arrays.asList(chatMsgKeys)))
+                            decodes = true;
+                        break;
+                }
+            }
+            return decodes;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * You may not modify, use, reproduce, or distribute this software except in
+ * compliance with  the terms of the License at:
+ * https://github.com/javaee/tutorial-examples/LICENSE.txt
+ */
+package javaeetutorial.web.websocketbot.decoders;
+
+import javaeetutorial.web.websocketbot.messages.ChatMessage;
+import javaeetutorial.web.websocketbot.messages.JoinMessage;
+import javaeetutorial.web.websocketbot.messages.Message;
+import javax.websocket.DecodeException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Decodes the messages that the chat page sends.
+ */
+public class MessageDecoderTest {
+
+    static final String JOIN = "{\"type\":\"join\",\"name\":\"Peter\"}";
+    static final String CHAT = "{\"type\":\"chat\",\"name\":\"Peter\","
+            + "\"target\":\"Duke\",\"message\":\"How are you?\"}";
+
+    private final MessageDecoder decoder = new MessageDecoder();
+
+    private void assertNotDecoded(String string) {
+        try {
+            decoder.decode(string);
+            fail("Decoded: " + string);
+        } catch (DecodeException e) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testJoin() throws DecodeException {
+        assertTrue(decoder.willDecode(JOIN));
+        Message msg = decoder.decode(JOIN);
+        assertTrue(msg instanceof JoinMessage);
+        assertEquals("Peter", ((JoinMessage) msg).getName());
+    }
+
+    @Test
+    public void testChat() throws DecodeException {
+        assertTrue(decoder.willDecode(CHAT));
+        ChatMessage msg = (ChatMessage) decoder.decode(CHAT);
+        assertEquals("Peter", msg.getName());
+        assertEquals("Duke", msg.getTarget());
+        assertEquals("How are you?", msg.getMessage());
+    }
+
+    @Test
+    public void testFieldOrderAndOtherFields() throws DecodeException {
+        ChatMessage msg = (ChatMessage) decoder.decode(
+                "{\"message\":\"Hi \\\"Duke\\\"\",\"target\":\"Duke\","
+                + "\"time\":12,\"name\":\"Peter\",\"type\":\"chat\"}");
+        assertEquals("Peter", msg.getName());
+        assertEquals("Duke", msg.getTarget());
+        assertEquals("Hi \"Duke\"", msg.getMessage());
+    }
+
+    @Test
+    public void testMissingFields() {
+        assertNotDecoded("{\"type\":\"join\"}");
+        assertNotDecoded("{\"type\":\"chat\",\"name\":\"Peter\","
+                + "\"message\":\"How are you?\"}");
+        assertNotDecoded("{\"type\":\"leave\",\"name\":\"Peter\"}");
+        assertNotDecoded("{\"name\":\"Peter\"}");
+        /* The type must be a string */
+        assertNotDecoded("{\"type\":1,\"name\":\"Peter\"}");
+    }
+
+    @Test
+    public void testMalformedJson() {
+        assertNotDecoded("{\"type\":\"join\",\"name\":");
+        assertNotDecoded("{\"type\" \"join\"}");
+    }
+
+    @Test
+    public void testWillDecode() {
+        assertFalse(decoder.willDecode(""));
+        assertFalse(decoder.willDecode("hello"));
+        assertFalse(decoder.willDecode("{\"name\":\"Peter\"}"));
+    }
+}